@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * class AnytimeSolver
+ * <p>
+ * Searches for a solution to a {@link Level} like a {@link Solver}, but for a fixed amount of time, handing over the best partial solution found so far every time it gets better.
+ * Meant for big {@link Level}s that would take too long to solve, where getting most of the way there is enough.
+ * <p>
+ * A partial solution is better than another if it has more flows connected, or as many and more cells filled (see {@link PartialSolution#isBetterThan(PartialSolution)}).
+ * The search is the same depth first search as a {@link Solver}'s, so it only ever holds the moves on the way to the current state, however long it runs.
+ * Only the best partial solution is kept, so memory doesn't grow with the number of improvements either.
+ * <p>
+ * Each better partial solution only keeps a copy of the moves that led to it; its {@link Level} is not made until it is asked for (see {@link PartialSolution#getLevel()}),
+ * so finding one costs little more than the moves the search makes anyway.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class AnytimeSolver
+{
+  /**
+   * The {@link Level} being solved.
+   */
+  private final Level puzzle;
+  /**
+   * Set to stop the current search, or the next one if none is going on. Cleared when a search ends.
+   */
+  private final AtomicBoolean stop = new AtomicBoolean();
+  /**
+   * The best partial solution of the last search.
+   */
+  private volatile PartialSolution best;
+  /**
+   * How many times the last search found a better partial solution.
+   */
+  private volatile int improvements;
+
+  /**
+   * Constructor for AnytimeSolver
+   * <p>
+   * Creates an {@code AnytimeSolver} for a {@link Level}.
+   *
+   * @param puzzle The {@link Level} to solve. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   */
+  public AnytimeSolver(Level puzzle)
+  {
+    this.puzzle = puzzle;
+  }
+
+  /**
+   * Searches until a solution is found, every move has been tried, the time runs out or {@link AnytimeSolver#stop()} is called.
+   * <p>
+   * {@code listener} is called on this thread with each better partial solution as soon as it is found, starting with the {@link Level} with nothing drawn.
+   * The last one it is called with is also kept as {@link AnytimeSolver#getBest()}.
+   * If {@link AnytimeSolver#stop()} was called while no search was going on, this one stops straight away.
+   *
+   * @param budget   How long to search for, in nanoseconds.
+   * @param listener What to call with each better partial solution, or {@code null} for nothing.
+   * @return the {@link SolverResult}, with the solution if one was found. It is {@link SolverStatus#STOPPED} if the search ran out of time or was stopped.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public synchronized SolverResult solve(long budget, Consumer<PartialSolution> listener)
+  {
+    long start = System.nanoTime();
+    best = null;
+    improvements = 0;
+
+    try
+    {
+      SearchState state = new SearchState(puzzle);
+      Solver solver = new Solver(state);
+      solver.setCancel(stop);
+      solver.setDeadline(start + budget);
+      solver.setProgress(s -> improve(s, solver.getNodes(), System.nanoTime() - start, listener));
+      improve(state, 0, 0, listener);
+
+      boolean solved = solver.search();
+      long nanos = System.nanoTime() - start;
+      if (solved)
+        return new SolverResult(SolverStatus.SOLVED, best.getLevel(), solver.getNodes(), nanos);
+      return new SolverResult(solver.isCancelled() ? SolverStatus.STOPPED : SolverStatus.UNSOLVABLE, Collections.<Level>emptyList(), solver.getNodes(), nanos);
+    }
+    finally
+    {
+      stop.set(false);
+    }
+  }
+
+  /**
+   * Stops the search soon after, from any thread. {@link AnytimeSolver#solve(long, Consumer)} then returns with the best partial solution kept.
+   */
+  public void stop()
+  {
+    stop.set(true);
+  }
+
+  /**
+   * Gets the best partial solution of the last search, or of the one going on now.
+   *
+   * @return the best {@link PartialSolution}, or {@code null} if there hasn't been a search.
+   */
+  public PartialSolution getBest()
+  {
+    return best;
+  }
+
+  /**
+   * Gets how many times the last search found a better partial solution, not counting the {@link Level} with nothing drawn.
+   *
+   * @return the number of improvements.
+   */
+  public int getImprovements()
+  {
+    return improvements;
+  }
+
+  /**
+   * Keeps a state as the best partial solution, and hands it to the listener.
+   *
+   * @param state    The state, which is better than any before it.
+   * @param nodes    How many moves the search has tried.
+   * @param nanos    How long the search has taken, in nanoseconds.
+   * @param listener What to hand it to. May be {@code null}.
+   */
+  private void improve(SearchState state, long nodes, long nanos, Consumer<PartialSolution> listener)
+  {
+    // Only copy the moves; the state goes on changing, and the Level is made if it is asked for.
+    int depth = state.depth;
+    int[] moveColors = Arrays.copyOf(state.moveColors, depth);
+    int[] moveCells = Arrays.copyOf(state.moveCells, depth);
+    PartialSolution partial = new PartialSolution(() -> state.toLevel(depth, moveColors, moveCells), state.colorCount - state.unconnected, state.colorCount, state.filled, state.volume, nodes, nanos);
+    if (best != null)
+      improvements++;
+    best = partial;
+    if (listener != null)
+      listener.accept(partial);
+  }
+}
@@ -0,0 +1,462 @@
+import java.util.Arrays;
+
+/**
+ * class BitboardLevel
+ * <p>
+ * A copy of a small {@link Level} (at most 64 cells, so up to 4x4x4) where each {@link PathColor} is a single {@code long}, with one bit per cell.
+ * Meant for analysis, where millions of states have to be looked at each second: filling and reachability checks are just a few bitwise operations,
+ * and a win check is a bitwise check that every cell is filled, then a walk along each flow, one cell at a time.
+ * <p>
+ * Bit {@code i} is the cell with index {@code i} in the {@link Cube} (see {@link Cube#indexOf(int, int, int)}).
+ * Which color each cell is and where the {@link PathType#START}s are are kept as masks, and the flow direction of each cell in an array with one entry per cell.
+ * A flow counts as complete the same way as in {@link Level#checkWin()}: following the directions from one of its starts leads through cells of its color to the other.
+ * A flow may run alongside itself, as it has to in small levels.
+ *
+ * @author Peter Stratton
+ * @version 1.3
+ */
+public class BitboardLevel
+{
+  /**
+   * The largest side length a {@code BitboardLevel} can have.
+   */
+  public static final int MAX_SIZE = 4;
+
+  /**
+   * The cells that have a neighbour in each direction, indexed by size, then {@link PathDirection#ordinal()}. Only a cell in this mask may be shifted that way.
+   */
+  private static final long[][] MOVE_MASKS = new long[MAX_SIZE + 1][];
+  /**
+   * How far a cell's bit moves for one step in each direction, indexed by size, then {@link PathDirection#ordinal()}. See {@link PathDirection#indexOffset(int)}.
+   */
+  private static final int[][] SHIFTS = new int[MAX_SIZE + 1][];
+  /**
+   * Every {@link PathDirection}, by {@link PathDirection#ordinal()}, so that looking one up doesn't copy {@link PathDirection#values()}.
+   */
+  private static final PathDirection[] DIRECTION_VALUES = PathDirection.values();
+
+  static
+  {
+    PathDirection[] directions = PathDirection.values();
+    for (int size = 1; size <= MAX_SIZE; size++)
+    {
+      MOVE_MASKS[size] = new long[directions.length];
+      SHIFTS[size] = PathDirection.indexOffsets(size);
+      for (int z = 0; z < size; z++)
+        for (int y = 0; y < size; y++)
+          for (int x = 0; x < size; x++)
+            for (PathDirection direction : directions)
+            {
+              int nx = x + direction.getDX(), ny = y + direction.getDY(), nz = z + direction.getDZ();
+              if (nx >= 0 && ny >= 0 && nz >= 0 && nx < size && ny < size && nz < size)
+                MOVE_MASKS[size][direction.ordinal()] |= 1L << (x + size * (y + size * z));
+            }
+    }
+  }
+
+  /**
+   * The side length of the level.
+   */
+  private final int size;
+  /**
+   * A mask with a bit set for every cell in the level.
+   */
+  private final long all;
+  /**
+   * {@link BitboardLevel#MOVE_MASKS} for this size.
+   */
+  private final long[] moveMasks;
+  /**
+   * {@link BitboardLevel#SHIFTS} for this size.
+   */
+  private final int[] shifts;
+  /**
+   * The cells of each {@link PathColor}, including its {@link PathType#START}s. Indexed by {@link PathColor#getId()}.
+   */
+  private long[] colors;
+  /**
+   * The {@link PathType#START} cells of each {@link PathColor}. Indexed by {@link PathColor#getId()}.
+   */
+  private long[] starts;
+  /**
+   * The flow direction of each cell, by index, as {@link PathDirection#ordinal()} {@code + 1}, or {@code 0} for none.
+   */
+  private byte[] directions;
+  /**
+   * Every cell that is not empty.
+   */
+  private long occupied;
+
+  /**
+   * Constructor for BitboardLevel
+   * <p>
+   * Creates a {@code BitboardLevel} with the same cells as a {@link Level}.
+   *
+   * @param level The {@link Level} to copy. Must be no bigger than {@link BitboardLevel#MAX_SIZE}.
+   */
+  public BitboardLevel(Level level)
+  {
+    this(level.size());
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+        {
+          Path path = level.getPath(x, y, z);
+          if (path != null)
+          {
+            long bit = 1L << level.indexOf(x, y, z);
+            int c = path.getColor().getId();
+            if (c >= colors.length)
+              growColors(c + 1);
+            colors[c] |= bit;
+            occupied |= bit;
+            if (path.getType() == PathType.START)
+              starts[c] |= bit;
+            if (path.getDirection() != null)
+              directions[level.indexOf(x, y, z)] = (byte) (path.getDirection().ordinal() + 1);
+          }
+        }
+  }
+
+  /**
+   * Creates an empty {@code BitboardLevel} of a given size.
+   *
+   * @param size The side length of the level. Must be no bigger than {@link BitboardLevel#MAX_SIZE}.
+   */
+  private BitboardLevel(int size)
+  {
+    if (!fits(size))
+      throw new IllegalArgumentException("A level of size " + size + " doesn't fit in a BitboardLevel! The largest is " + MAX_SIZE + ".");
+    this.size = size;
+    all = size == MAX_SIZE ? -1L : (1L << (size * size * size)) - 1;
+    moveMasks = MOVE_MASKS[size];
+    shifts = SHIFTS[size];
+    colors = new long[PathColor.NAMED_COUNT];
+    starts = new long[PathColor.NAMED_COUNT];
+    directions = new byte[size * size * size];
+  }
+
+  /**
+   * Checks if a level of a given size can be made into a {@code BitboardLevel}.
+   *
+   * @param size The side length of the level.
+   * @return whether the level has no more than 64 cells.
+   */
+  public static boolean fits(int size)
+  {
+    return size >= 1 && size <= MAX_SIZE;
+  }
+
+  /**
+   * Makes a {@link Level} with the same cells as this {@code BitboardLevel}.
+   * <p>
+   * Every cell keeps its flow direction, so a {@link Level} made into a {@code BitboardLevel} and back is the same as it was.
+   *
+   * @return the new {@link Level}.
+   */
+  public Level toLevel()
+  {
+    Cube cube = new Cube(size);
+    for (int c = 0; c < colors.length; c++)
+      for (long cells = starts[c]; cells != 0; cells &= cells - 1)
+        cube.setCell(Long.numberOfTrailingZeros(cells), Cube.encode(PathType.START, PathColor.get(c), null));
+    Level level = new Level(cube);
+
+    for (int c = 0; c < colors.length; c++)
+    {
+      PathColor color = PathColor.get(c);
+      for (long cells = colors[c] & ~starts[c]; cells != 0; cells &= cells - 1)
+        level.setPath(toPacked(Long.numberOfTrailingZeros(cells)), color, null);
+    }
+    for (long cells = occupied; cells != 0; cells &= cells - 1)
+    {
+      int index = Long.numberOfTrailingZeros(cells);
+      if (directions[index] != 0)
+        level.setDirection(Point3I.fromPacked(toPacked(index)), DIRECTION_VALUES[directions[index] - 1]);
+    }
+    level.clearHistory();
+    return level;
+  }
+
+  /**
+   * Gets the size of this {@code BitboardLevel}.
+   *
+   * @return the side length of the level.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Gets the cells of a {@link PathColor}, including its {@link PathType#START}s.
+   *
+   * @param color The {@link PathColor} to get the cells of.
+   * @return a mask of the cells of that color.
+   */
+  public long getColorMask(PathColor color)
+  {
+    return color.getId() < colors.length ? colors[color.getId()] : 0;
+  }
+
+  /**
+   * Gets the {@link PathType#START} cells of a {@link PathColor}.
+   *
+   * @param color The {@link PathColor} to get the starts of.
+   * @return a mask of the starts of that color.
+   */
+  public long getStartMask(PathColor color)
+  {
+    return color.getId() < starts.length ? starts[color.getId()] : 0;
+  }
+
+  /**
+   * Gets every cell that is not empty.
+   *
+   * @return a mask of the filled cells.
+   */
+  public long getOccupied()
+  {
+    return occupied;
+  }
+
+  /**
+   * Gets every cell that is empty.
+   *
+   * @return a mask of the empty cells.
+   */
+  public long getEmpty()
+  {
+    return all & ~occupied;
+  }
+
+  /**
+   * Fills an empty cell with a {@link PathType#PATH} of a {@link PathColor}, or empties a {@link PathType#PATH} cell.
+   *
+   * @param index The index of the cell. See {@link Cube#indexOf(int, int, int)}.
+   * @param color The new color of the cell, or {@code null} to empty it.
+   * @return whether the cell was changed. {@link PathType#START}s and the cells of other colors are never changed.
+   */
+  public boolean setPath(int index, PathColor color)
+  {
+    long bit = 1L << index;
+    if (color == null)
+    {
+      for (int c = 0; c < colors.length; c++)
+        if ((colors[c] & ~starts[c] & bit) != 0)
+        {
+          colors[c] &= ~bit;
+          occupied &= ~bit;
+          directions[index] = 0;
+          return true;
+        }
+      return false;
+    }
+    if ((occupied & bit) != 0)
+      return false;
+    if (color.getId() >= colors.length)
+      growColors(color.getId() + 1);
+    colors[color.getId()] |= bit;
+    occupied |= bit;
+    return true;
+  }
+
+  /**
+   * Sets the flow direction of a cell.
+   *
+   * @param index     The index of the cell. See {@link Cube#indexOf(int, int, int)}.
+   * @param direction The new flow direction, or {@code null} for none.
+   * @return whether the cell was changed. Empty cells are never changed.
+   */
+  public boolean setDirection(int index, PathDirection direction)
+  {
+    long bit = 1L << index;
+    if ((occupied & bit) == 0)
+      return false;
+    directions[index] = (byte) (direction == null ? 0 : direction.ordinal() + 1);
+    return true;
+  }
+
+  /**
+   * Gets the flow direction of a cell.
+   *
+   * @param index The index of the cell. See {@link Cube#indexOf(int, int, int)}.
+   * @return the flow direction of the cell, or {@code null} if it has none.
+   */
+  public PathDirection getDirection(int index)
+  {
+    return directions[index] == 0 ? null : DIRECTION_VALUES[directions[index] - 1];
+  }
+
+  /**
+   * Moves every cell of a mask one step in a direction, dropping the ones that would leave the level.
+   *
+   * @param cells     The cells to move.
+   * @param direction The direction to move them in.
+   * @return a mask of the moved cells.
+   */
+  public long shift(long cells, PathDirection direction)
+  {
+    int d = direction.ordinal();
+    int shift = shifts[d];
+    cells &= moveMasks[d];
+    return shift > 0 ? cells << shift : cells >>> -shift;
+  }
+
+  /**
+   * Gets every cell that is next to at least one cell of a mask.
+   *
+   * @param cells The cells to get the neighbours of.
+   * @return a mask of their neighbours, which may include cells of the mask itself.
+   */
+  public long neighbours(long cells)
+  {
+    long result = 0;
+    for (int d = 0; d < shifts.length; d++)
+    {
+      int shift = shifts[d];
+      long moving = cells & moveMasks[d];
+      result |= shift > 0 ? moving << shift : moving >>> -shift;
+    }
+    return result;
+  }
+
+  /**
+   * Gets every cell that can be reached from some cells, moving only through the cells of another mask.
+   *
+   * @param from    The cells to start from. Only the ones in {@code through} are used.
+   * @param through The cells that can be moved through.
+   * @return a mask of the reachable cells.
+   */
+  public long reachable(long from, long through)
+  {
+    long reached = from & through;
+    while (true)
+    {
+      long next = (reached | neighbours(reached)) & through;
+      if (next == reached)
+        return reached;
+      reached = next;
+    }
+  }
+
+  /**
+   * Checks if every cell of the level is filled.
+   *
+   * @return whether there are no empty cells.
+   */
+  public boolean isFull()
+  {
+    return occupied == all;
+  }
+
+  /**
+   * Checks if the {@link PathType#START}s of a {@link PathColor} could still be joined, going through empty cells and cells of that color.
+   *
+   * @param color The {@link PathColor} to check.
+   * @return whether there is a way between the starts of that color.
+   */
+  public boolean canConnect(PathColor color)
+  {
+    long ends = getStartMask(color);
+    if (ends == 0)
+      return true;
+    return (reachable(Long.lowestOneBit(ends), getEmpty() | getColorMask(color)) & ends) == ends;
+  }
+
+  /**
+   * Checks if the flow of a {@link PathColor} is complete: following the directions from the first of its {@link PathType#START}s that has one leads through cells of its color to the other start.
+   * This is the same as how {@link Level#checkWin()} checks a flow. It walks the flow one cell at a time, so it takes as many steps as the flow is long.
+   *
+   * @param color The {@link PathColor} to check.
+   * @return whether the flow of that color is complete.
+   */
+  public boolean isComplete(PathColor color)
+  {
+    return color.getId() < colors.length && isComplete(color.getId());
+  }
+
+  /**
+   * Checks if the flow of a {@link PathColor} is complete. See {@link BitboardLevel#isComplete(PathColor)}.
+   *
+   * @param c The {@link PathColor#getId()} of the color to check.
+   * @return whether the flow of that color is complete.
+   */
+  private boolean isComplete(int c)
+  {
+    long cells = colors[c];
+    int first = -1;
+    for (long from = starts[c]; from != 0 && first < 0; from &= from - 1)
+      if (directions[Long.numberOfTrailingZeros(from)] != 0)
+        first = Long.numberOfTrailingZeros(from);
+    if (first < 0)
+      return false;
+
+    // Follow the flow from its first start, for at most as many steps as it has cells.
+    int index = first;
+    for (int length = Long.bitCount(cells); length > 0; length--)
+    {
+      int d = directions[index] - 1;
+      if (d < 0 || (moveMasks[d] & (1L << index)) == 0)
+        break;
+      int next = index + shifts[d];
+      if ((cells & (1L << next)) == 0 || next == first)
+        break;
+      index = next;
+    }
+    return index != first && (starts[c] & (1L << index)) != 0;
+  }
+
+  /**
+   * Checks to see if this {@code BitboardLevel} is complete: every cell is filled and every flow is complete.
+   *
+   * @return whether the level has been won.
+   */
+  public boolean isWon()
+  {
+    if (occupied != all)
+      return false;
+    for (int c = 0; c < colors.length; c++)
+      if (colors[c] != 0 && !isComplete(c))
+        return false;
+    return true;
+  }
+
+  /**
+   * Makes room for more colors in {@link BitboardLevel#colors} and {@link BitboardLevel#starts}.
+   *
+   * @param count How many colors there needs to be room for.
+   */
+  private void growColors(int count)
+  {
+    int length = Math.min(Math.max(count, colors.length * 2), PathColor.MAX_COUNT);
+    colors = Arrays.copyOf(colors, length);
+    starts = Arrays.copyOf(starts, length);
+  }
+
+  /**
+   * Packs a cell index as a location (see {@link Point3I#pack(int, int, int)}).
+   *
+   * @param index The index of the cell.
+   * @return the packed location of the cell.
+   */
+  private long toPacked(int index)
+  {
+    return Point3I.pack(index % size, (index / size) % size, index / (size * size));
+  }
+
+  /**
+   * Creates a copy of this {@code BitboardLevel}.
+   *
+   * @return The cloned object. See: {@link Object#clone()}
+   */
+  public BitboardLevel clone()
+  {
+    BitboardLevel clone = new BitboardLevel(size);
+    clone.colors = colors.clone();
+    clone.starts = starts.clone();
+    clone.directions = directions.clone();
+    clone.occupied = occupied;
+    return clone;
+  }
+}
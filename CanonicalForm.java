@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * class CanonicalForm
+ * <p>
+ * The same encoding for every {@link Level} that is another one turned, mirrored (see {@link Symmetry}) or with its colors swapped around,
+ * so that two boards that are really the same one can be told apart from ones that aren't. {@link DifficultySearch} uses it to drop copies of {@link Level}s it has already kept.
+ * The searches don't use it: neither the {@link Solver}s nor their {@link TranspositionTable}s nor the {@link HintService} skip moves or states that a symmetry turns into each other.
+ * <p>
+ * Each cell is encoded as a number: {@code 0} when it is empty, and otherwise from its color, whether it is a {@link PathType#START}, and its flow direction.
+ * Colors are not encoded by their {@link PathColor}, but numbered from {@code 1} in the order they are first seen, so the colors of a {@link Level} can be swapped without changing the encoding.
+ * The canonical form is the smallest encoding, cell by cell, of all 48 turned copies of the {@link Level}.
+ * <p>
+ * The turned copies are never made. Instead, every symmetry is followed one cell at a time, working out where each cell comes from as it goes (see {@link Symmetry#sourceSteps(int)}),
+ * and as soon as one gives a bigger number than another for a cell it is dropped. A dropped symmetry costs nothing more, and most are dropped in the first few cells,
+ * so this takes not much longer than reading the {@link Level} once.
+ * The symmetries left at the end are the ones the {@link Level} has; there is more than one when it looks the same turned some way (see {@link CanonicalForm#getSymmetryCount()}).
+ * <p>
+ * A 128-bit hash of the encoding is kept, for use as a key where the encoding itself is too big to store.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public final class CanonicalForm
+{
+  /**
+   * How far the color number of a cell is shifted in its encoding.
+   */
+  private static final int COLOR_SHIFT = 4;
+  /**
+   * The bit that is set in the encoding of a {@link PathType#START}.
+   */
+  private static final int START_BIT = 0x8;
+  /**
+   * Where the indexes of the high half of the hash start, so that its keys are different from the low half's. See {@link Zobrist#key(int, int)}.
+   */
+  private static final int HIGH_KEYS = Integer.MIN_VALUE;
+
+  /**
+   * The side length of the {@link Level}.
+   */
+  private final int size;
+  /**
+   * The encoding of each cell, in the order of {@link Level#indexOf(int, int, int)}.
+   */
+  private final int[] encoding;
+  /**
+   * A symmetry that turns the {@link Level} into its canonical form.
+   */
+  private final Symmetry symmetry;
+  /**
+   * The color that each number in the encoding stands for. Entry {@code 0} is unused.
+   */
+  private final PathColor[] colors;
+  /**
+   * How many symmetries turn the {@link Level} into its canonical form.
+   */
+  private final int symmetryCount;
+  /**
+   * The low 64 bits of the hash of the encoding.
+   */
+  private final long hashLow;
+  /**
+   * The high 64 bits of the hash of the encoding.
+   */
+  private final long hashHigh;
+
+  /**
+   * Creates a {@code CanonicalForm} from its parts. See {@link CanonicalForm#of(Level)}.
+   *
+   * @param size          The side length of the {@link Level}.
+   * @param encoding      The encoding of each cell.
+   * @param symmetry      A symmetry that turns the {@link Level} into its canonical form.
+   * @param colors        The color that each number in the encoding stands for.
+   * @param symmetryCount How many symmetries turn the {@link Level} into its canonical form.
+   */
+  private CanonicalForm(int size, int[] encoding, Symmetry symmetry, PathColor[] colors, int symmetryCount)
+  {
+    this.size = size;
+    this.encoding = encoding;
+    this.symmetry = symmetry;
+    this.colors = colors;
+    this.symmetryCount = symmetryCount;
+
+    long low = Zobrist.key(-1, size);
+    long high = Zobrist.key(HIGH_KEYS - 1, size);
+    for (int i = 0; i < encoding.length; i++)
+    {
+      low ^= Zobrist.key(i, encoding[i]);
+      high ^= Zobrist.key(HIGH_KEYS + i, encoding[i]);
+    }
+    hashLow = low;
+    hashHigh = high;
+  }
+
+  /**
+   * Works out the canonical form of a {@link Level}.
+   *
+   * @param level The {@link Level}. It is not changed.
+   * @return the canonical form of the {@link Level}.
+   */
+  public static CanonicalForm of(Level level)
+  {
+    int size = level.size();
+    int volume = size * size * size;
+
+    // Read every cell once, so the symmetries don't each look them up.
+    int[] cells = new int[volume];
+    int colorIds = 0;
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+        {
+          int cell = Cube.encode(level.getPath(x, y, z));
+          cells[level.indexOf(x, y, z)] = cell;
+          colorIds = Math.max(colorIds, Cube.colorIndexOf(cell) + 1);
+        }
+
+    int count = Symmetry.ALL.length;
+    int[] alive = new int[count];
+    int[][] steps = new int[count][];
+    int[][] numbers = new int[count][colorIds];
+    int[] nextNumbers = new int[count];
+    for (int s = 0; s < count; s++)
+    {
+      alive[s] = s;
+      steps[s] = Symmetry.ALL[s].sourceSteps(size);
+      nextNumbers[s] = 1;
+    }
+
+    int[] encoding = new int[volume];
+    int[] codes = new int[count];
+    int[] sourceCells = new int[count];
+    int i = 0;
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++, i++)
+        {
+          // Encode this cell under every symmetry left, and keep only the ones that give the smallest number.
+          int smallest = Integer.MAX_VALUE;
+          for (int a = 0; a < count; a++)
+          {
+            int s = alive[a];
+            int[] step = steps[s];
+            int cell = cells[step[0] + x * step[1] + y * step[2] + z * step[3]];
+            sourceCells[a] = cell;
+            int code = 0;
+            if (cell != Cube.EMPTY)
+            {
+              int color = Cube.colorIndexOf(cell);
+              int number = numbers[s][color] != 0 ? numbers[s][color] : nextNumbers[s];
+              PathDirection direction = Symmetry.ALL[s].map(Cube.directionOf(cell));
+              code = (number << COLOR_SHIFT) | (Cube.isStart(cell) ? START_BIT : 0) | (direction == null ? 0 : direction.ordinal() + 1);
+            }
+            codes[a] = code;
+            if (code < smallest)
+              smallest = code;
+          }
+
+          int kept = 0;
+          for (int a = 0; a < count; a++)
+            if (codes[a] == smallest)
+            {
+              int s = alive[a];
+              int cell = sourceCells[a];
+              if (cell != Cube.EMPTY && numbers[s][Cube.colorIndexOf(cell)] == 0)
+                numbers[s][Cube.colorIndexOf(cell)] = nextNumbers[s]++;
+              alive[kept++] = s;
+            }
+          count = kept;
+          encoding[i] = smallest;
+        }
+
+    int best = alive[0];
+    PathColor[] colors = new PathColor[nextNumbers[best]];
+    for (int id = 0; id < colorIds; id++)
+      if (numbers[best][id] != 0)
+        colors[numbers[best][id]] = PathColor.get(id);
+    return new CanonicalForm(size, encoding, Symmetry.ALL[best], colors, count);
+  }
+
+  /**
+   * Gets the side length of the {@link Level}.
+   *
+   * @return the side length.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Gets the encoding of the canonical form.
+   *
+   * @return a copy of the encoding of each cell, in the order of {@link Level#indexOf(int, int, int)}.
+   */
+  public int[] getEncoding()
+  {
+    return encoding.clone();
+  }
+
+  /**
+   * Gets a symmetry that turns the {@link Level} into its canonical form. See {@link Symmetry#apply(Level)}.
+   *
+   * @return the {@link Symmetry}.
+   */
+  public Symmetry getSymmetry()
+  {
+    return symmetry;
+  }
+
+  /**
+   * Gets the color of the {@link Level} that the canonical form numbers as a given color.
+   *
+   * @param number The number of the color in the encoding, starting from {@code 1}.
+   * @return the {@link PathColor} it stands for.
+   */
+  public PathColor getColor(int number)
+  {
+    return colors[number];
+  }
+
+  /**
+   * Gets how many colors the {@link Level} has.
+   *
+   * @return the number of colors in the encoding.
+   */
+  public int getColorCount()
+  {
+    return colors.length - 1;
+  }
+
+  /**
+   * Gets how many of the 48 symmetries turn the {@link Level} into its canonical form.
+   * <p>
+   * This is how many ways the {@link Level} can be turned to look the same, with its colors swapped around. It is {@code 1} when it has no symmetry at all.
+   *
+   * @return the number of symmetries, between {@code 1} and {@code 48}.
+   */
+  public int getSymmetryCount()
+  {
+    return symmetryCount;
+  }
+
+  /**
+   * Gets the low 64 bits of the 128-bit hash of the canonical form.
+   *
+   * @return the low half of the hash.
+   */
+  public long getHashLow()
+  {
+    return hashLow;
+  }
+
+  /**
+   * Gets the high 64 bits of the 128-bit hash of the canonical form.
+   *
+   * @return the high half of the hash.
+   */
+  public long getHashHigh()
+  {
+    return hashHigh;
+  }
+
+  @Override
+  public boolean equals(Object other)
+  {
+    if (this == other)
+      return true;
+    if (!(other instanceof CanonicalForm))
+      return false;
+    CanonicalForm form = (CanonicalForm) other;
+    return size == form.size && hashLow == form.hashLow && hashHigh == form.hashHigh && Arrays.equals(encoding, form.encoding);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return (int) (hashLow ^ (hashLow >>> 32));
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("CanonicalForm(%d, %016x%016x)", size, hashHigh, hashLow);
+  }
+}
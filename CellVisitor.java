@@ -0,0 +1,21 @@
+/**
+ * interface CellVisitor
+ * <p>
+ * Something that is shown the cells of a {@link Cube} that aren't empty, by {@link Cube#forEachCell(CellVisitor)}.
+ * <p>
+ * Cells are given by their index (see {@link Cube#indexOf(int, int, int)}) and packed value (see {@link Cube#encode(Path)}), so that visiting them creates no objects.
+ *
+ * @author Kevin Chen
+ * @version 1.0
+ */
+public interface CellVisitor
+{
+  /**
+   * Called for each cell of the {@link Cube} that is not {@link Cube#EMPTY}.
+   *
+   * @param index The index of the cell.
+   * @param cell  The packed cell.
+   * @return {@code true} to keep going, or {@code false} to stop.
+   */
+  boolean visit(int index, int cell);
+}
@@ -0,0 +1,184 @@
+/**
+ * class Connectivity
+ * <p>
+ * Checks whether a {@link SearchState} can still lead to a solution, by splitting its empty cells into regions that are connected to each other.
+ * <p>
+ * A flow can only go through one region, so for a state to be solvable:
+ * <ul>
+ * <li>there can't be any dead ends (see {@link SearchState#deadEnds}), which takes no time to check;</li>
+ * <li>every color that hasn't reached its target has a region that touches both its head and its target, or its head is next to its target;</li>
+ * <li>every region touches both the head and the target of at least one such color, so that something can fill it.</li>
+ * </ul>
+ * The regions are found with a union-find over the empty cells, in one pass over the board.
+ * The arrays are made once and reused, so checking creates no objects. A {@code Connectivity} must not be used by more than one thread at a time.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+class Connectivity
+{
+  /**
+   * The parent of each empty cell in the union-find. A cell is the root of its region if it is its own parent.
+   */
+  private final int[] parents;
+  /**
+   * The last check each region was found to be fillable in, by its root.
+   */
+  private final int[] fillable;
+  /**
+   * The regions next to the head of the color being checked.
+   */
+  private final int[] headRegions = new int[SearchState.DIRECTION_COUNT];
+  /**
+   * Counts checks, for {@link Connectivity#fillable}.
+   */
+  private int check;
+
+  /**
+   * Constructor for Connectivity
+   * <p>
+   * Creates a {@code Connectivity} for {@link SearchState}s with a number of cells.
+   *
+   * @param volume How many cells the states have.
+   */
+  Connectivity(int volume)
+  {
+    parents = new int[volume];
+    fillable = new int[volume];
+  }
+
+  /**
+   * Checks if a state could still lead to a solution. See the class description for what is checked.
+   *
+   * @param state The state to check.
+   * @return whether the state is worth searching.
+   */
+  boolean isViable(SearchState state)
+  {
+    if (state.deadEnds > 0)
+      return false;
+    findRegions(state);
+    for (int c = 0; c < state.colorCount; c++)
+      if (!state.connected[c] && !markFillable(state, c))
+        return false;
+    for (int cell = 0; cell < state.volume; cell++)
+      if (state.cells[cell] == SearchState.EMPTY && parents[cell] == cell && fillable[cell] != check)
+        return false;
+    return true;
+  }
+
+  /**
+   * Finds everything that stops a state from leading to a solution, to show to the player.
+   *
+   * @param state The state to check.
+   * @return for each cell, whether it is a problem: an empty dead end, an empty cell in a region no color can fill, or the head of a color that can't reach its target.
+   */
+  boolean[] findProblems(SearchState state)
+  {
+    boolean[] problems = new boolean[state.volume];
+    findRegions(state);
+    for (int c = 0; c < state.colorCount; c++)
+      if (!state.connected[c] && !markFillable(state, c))
+        problems[state.heads[c]] = true;
+    for (int cell = 0; cell < state.volume; cell++)
+      if (state.cells[cell] == SearchState.EMPTY)
+        problems[cell] = state.support[cell] < 2 || fillable[find(cell)] != check;
+    return problems;
+  }
+
+  /**
+   * Joins every empty cell of a state to its empty neighbours, and starts a new check.
+   *
+   * @param state The state.
+   */
+  private void findRegions(SearchState state)
+  {
+    check++;
+    for (int cell = 0; cell < state.volume; cell++)
+    {
+      if (state.cells[cell] != SearchState.EMPTY)
+        continue;
+      parents[cell] = cell;
+      // Only look back at cells that have been given a parent already.
+      int neighbours = cell * SearchState.DIRECTION_COUNT;
+      for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+      {
+        int neighbour = state.neighbours[neighbours + d];
+        if (neighbour >= 0 && neighbour < cell && state.cells[neighbour] == SearchState.EMPTY)
+          union(cell, neighbour);
+      }
+    }
+  }
+
+  /**
+   * Marks the regions that a color could fill: the ones that touch both its head and its target.
+   *
+   * @param state The state.
+   * @param c     The color, which hasn't reached its target.
+   * @return whether the color can still reach its target.
+   */
+  private boolean markFillable(SearchState state, int c)
+  {
+    int head = state.heads[c] * SearchState.DIRECTION_COUNT;
+    int target = state.targets[c];
+    boolean reachable = false;
+    int count = 0;
+    for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+    {
+      int neighbour = state.neighbours[head + d];
+      if (neighbour == target)
+        reachable = true;
+      else
+        if (neighbour >= 0 && state.cells[neighbour] == SearchState.EMPTY)
+          headRegions[count++] = find(neighbour);
+    }
+    int neighbours = target * SearchState.DIRECTION_COUNT;
+    for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+    {
+      int neighbour = state.neighbours[neighbours + d];
+      if (neighbour < 0 || state.cells[neighbour] != SearchState.EMPTY)
+        continue;
+      int region = find(neighbour);
+      for (int i = 0; i < count; i++)
+        if (headRegions[i] == region)
+        {
+          fillable[region] = check;
+          reachable = true;
+        }
+    }
+    return reachable;
+  }
+
+  /**
+   * Finds the root of the region of an empty cell, halving the path to it on the way.
+   *
+   * @param cell The empty cell.
+   * @return the root of its region.
+   */
+  private int find(int cell)
+  {
+    while (parents[cell] != cell)
+    {
+      parents[cell] = parents[parents[cell]];
+      cell = parents[cell];
+    }
+    return cell;
+  }
+
+  /**
+   * Joins the regions of two empty cells. The lower root becomes the root of both.
+   *
+   * @param a The first cell.
+   * @param b The second cell.
+   */
+  private void union(int a, int b)
+  {
+    a = find(a);
+    b = find(b);
+    if (a < b)
+      parents[b] = a;
+    else
+      if (b < a)
+        parents[a] = b;
+  }
+}
@@ -1,21 +1,112 @@
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * class Cube
  * <p>
  * Represents a three dimensional "cube" of flow cells within the game Flow3D.
+ * <p>
+ * Cells are not stored as {@link Path} objects, but packed into a single {@code short} each (see {@link Cube#encode(Path)}), indexed by {@code x + size * (y + size * z)}.
+ * Besides what a {@link Path} holds, a packed cell also holds the direction its flow comes from (see {@link Cube#previousOf(int)}), which is kept up to date by {@link Level}.
+ * Scans over the whole {@code Cube} should use {@link Cube#getCell(int)} with the static decoders ({@link Cube#colorOf(int)}, {@link Cube#typeOf(int)} and {@link Cube#directionOf(int)}).
+ * <p>
+ * The cells are stored in bricks of {@link Cube#BRICK_SIDE}{@code ^3} cells, so that a large {@code Cube} only takes up memory where it has paths.
+ * A brick is only made when a path is put in it, and is dropped again when it is emptied. {@link Cube#forEachCell(CellVisitor)} skips the empty bricks.
+ * A {@code Cube} that fits in one brick keeps its cells in the order of their index.
+ * <p>
+ * Bricks are shared between a {@code Cube} and its clones until one of them writes to it (copy-on-write). See {@link Cube#clone()}.
+ * <p>
+ * See {@link MappedCube} for a {@code Cube} that keeps its cells in a file instead.
+ * <p>
+ * A Zobrist hash of the cells is kept up to date as they change (see {@link Cube#getHash()}), so that boards can be looked up by their contents.
  *
  * @author Kevin Chen
- * @version 1.2
+ * @version 1.8
  */
 public class Cube
 {
   /**
-   * 3D Matrix holding the Paths that are inside the game.
+   * The packed value of an empty cell.
+   */
+  public static final int EMPTY = 0;
+
+  /**
+   * Mask of the bits holding the flow direction of a packed cell. Stored as {@link PathDirection#ordinal()} {@code + 1}, {@code 0} being no direction.
+   */
+  private static final int DIRECTION_MASK = 0x7;
+  /**
+   * The bit that is set when a packed cell is a {@link PathType#START}.
+   */
+  private static final int START_BIT = 0x8;
+  /**
+   * How far the direction of the previous cell in the flow is shifted in a packed cell. Stored like the flow direction, see {@link Cube#DIRECTION_MASK}.
+   */
+  private static final int PREVIOUS_SHIFT = 4;
+  /**
+   * Mask of the bits holding the direction of the previous cell in the flow.
    */
-  private Path[][][] cubePaths;
+  private static final int PREVIOUS_MASK = DIRECTION_MASK << PREVIOUS_SHIFT;
+  /**
+   * How far the color of a packed cell is shifted. Stored as {@link PathColor#getId()} {@code + 1}, so that an empty cell is always {@code 0}.
+   */
+  private static final int COLOR_SHIFT = 7;
+
+  /**
+   * An array of all the {@link PathDirection}s, in the order they are packed.
+   */
+  private static final PathDirection[] DIRECTION_VALUES = PathDirection.values();
+
+  /**
+   * How many bits of each coordinate pick the cell within its brick.
+   */
+  private static final int BRICK_BITS = 3;
+  /**
+   * The side length of a brick.
+   */
+  public static final int BRICK_SIDE = 1 << BRICK_BITS;
+
+  /**
+   * Used to give every {@code Cube} a different {@link Cube#owner}.
+   */
+  private static final AtomicLong NEXT_OWNER = new AtomicLong();
+
+  /**
+   * The packed cells of the cube, in bricks of {@link Cube#BRICK_SIDE}{@code ^3} cells, indexed by {@code bx + bricksPerSide * (by + bricksPerSide * bz)}.
+   * <p>
+   * A brick is {@code null} if all of its cells are empty.
+   */
+  private short[][] bricks;
+  /**
+   * How many cells of each brick are not empty. A brick is dropped when this gets to {@code 0}.
+   */
+  private int[] brickCounts;
+  /**
+   * The {@link Cube#owner} of the {@code Cube} that made each brick. A brick may only be written to if it is this {@code Cube}'s own, otherwise it is copied first.
+   */
+  private long[] brickOwners;
+  /**
+   * The ID of this {@code Cube}, for {@link Cube#brickOwners}. Changes whenever its bricks start being shared.
+   */
+  private long owner;
+  /**
+   * How many bricks there are along each side of the cube.
+   */
+  private int bricksPerSide;
+  /**
+   * How many cells are in each brick: {@link Cube#BRICK_SIDE}{@code ^3}, or the {@link Cube#volume()} if the cube fits in one brick.
+   */
+  private int brickLength;
   /**
    * Size of the cube.
    */
   private int size;
+  /**
+   * How many cells the cube has.
+   */
+  private int volume;
+  /**
+   * The XOR of the {@link Zobrist#key(int, int)} of every cell.
+   */
+  private long hash;
 
   /**
    * Constructor for Cube
@@ -26,8 +117,28 @@ public class Cube
    */
   public Cube(int sideLength)
   {
-    cubePaths = new Path[sideLength][sideLength][sideLength];
+    this(sideLength, true);
+  }
+
+  /**
+   * Creates an empty {@code Cube} object of a given size, which may keep its cells somewhere other than in bricks.
+   * <p>
+   * A subclass that doesn't use the bricks has to override {@link Cube#getCell(int)}, {@link Cube#getCell(int, int, int)}, {@link Cube#setCell(int, int)}, {@link Cube#forEachCell(CellVisitor)}, {@link Cube#getHash()} and {@link Cube#clone()}.
+   *
+   * @param sideLength The side length of the {@code Cube} to create.
+   * @param bricked    Whether to store the cells in bricks.
+   */
+  protected Cube(int sideLength, boolean bricked)
+  {
     size = sideLength;
+    volume = sideLength * sideLength * sideLength;
+    bricksPerSide = bricked ? (sideLength + BRICK_SIDE - 1) >>> BRICK_BITS : 0;
+    brickLength = bricksPerSide == 1 ? volume : BRICK_SIDE * BRICK_SIDE * BRICK_SIDE;
+    int brickCount = bricksPerSide * bricksPerSide * bricksPerSide;
+    bricks = new short[brickCount][];
+    brickCounts = new int[brickCount];
+    brickOwners = new long[brickCount];
+    owner = NEXT_OWNER.incrementAndGet();
   }
 
   /**
@@ -38,7 +149,7 @@ public class Cube
    */
   public void addStart(Point3I location, PathColor color)
   {
-    setPath(new Path(PathType.START, color), location);
+    setPath(Path.get(PathType.START, color), location);
   }
 
   /**
@@ -51,7 +162,9 @@ public class Cube
    */
   public void setPath(Path replacementPath, int x, int y, int z)
   {
-    cubePaths[x][y][z] = replacementPath;
+    if (x < 0 || y < 0 || z < 0 || x >= size || y >= size || z >= size)
+      throw new IndexOutOfBoundsException("(" + x + "," + y + "," + z + ") is outside of a Cube of size " + size + ".");
+    setCell(indexOf(x, y, z), encode(replacementPath));
   }
 
   /**
@@ -66,8 +179,39 @@ public class Cube
       setPath(replacementPath, location.getX(), location.getY(), location.getZ());
   }
 
+  /**
+   * Sets the specified location in the cube with the given {@link Path}.
+   *
+   * @param replacementPath The new {@link Path} object going in the {@code Cube}.
+   * @param packedLocation  The position in the {@code Cube} to put the {@link Path}, packed by {@link Point3I#pack(int, int, int)}.
+   */
+  public void setPath(Path replacementPath, long packedLocation)
+  {
+    setPath(replacementPath, Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
+  /**
+   * Changes the flow direction of the {@link Path} at the specified location, if there is one.
+   *
+   * @param direction The new flow direction. May be {@code null}.
+   * @param x         The X location in the {@code Cube}.
+   * @param y         The Y location in the {@code Cube}.
+   * @param z         The Z location in the {@code Cube}.
+   */
+  public void setDirection(PathDirection direction, int x, int y, int z)
+  {
+    if (x < 0 || y < 0 || z < 0 || x >= size || y >= size || z >= size)
+      throw new IndexOutOfBoundsException("(" + x + "," + y + "," + z + ") is outside of a Cube of size " + size + ".");
+    int index = indexOf(x, y, z);
+    int cell = getCell(index);
+    if (cell != EMPTY)
+      setCell(index, withDirection(cell, direction));
+  }
+
   /**
    * Gets the {@link Path} at the specified location in the {@code Cube}.
+   * <p>
+   * {@link Path}s can't be changed; use {@link Cube#setPath(Path, int, int, int)} or {@link Cube#setDirection(PathDirection, int, int, int)} instead.
    *
    * @param x The X location in the {@code Cube} of the {@link Path} to get.
    * @param y The Y location in the {@code Cube} of the {@link Path} to get.
@@ -78,7 +222,7 @@ public class Cube
   {
     if (x >= 0 && y >= 0 && z >= 0)
       if (x < size() && y < size() && z < size())
-        return cubePaths[x][y][z];
+        return decode(getCell(x, y, z));
     return null;
   }
 
@@ -95,6 +239,231 @@ public class Cube
     return null;
   }
 
+  /**
+   * Gets the {@link Path} at the specified location in the {@code Cube}.
+   *
+   * @param packedLocation The position in the {@code Cube} of the {@link Path} to get, packed by {@link Point3I#pack(int, int, int)}.
+   * @return the {@link Path} at the specified location.
+   */
+  public Path get(long packedLocation)
+  {
+    return get(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
+  /**
+   * Gets the packed cell at the given index. See {@link Cube#indexOf(int, int, int)}.
+   *
+   * @param index The index of the cell.
+   * @return the packed cell, or {@link Cube#EMPTY}.
+   */
+  public int getCell(int index)
+  {
+    if (bricksPerSide == 1)
+    {
+      short[] brick = bricks[0];
+      return brick == null ? EMPTY : brick[index] & 0xFFFF;
+    }
+    int yz = index / size;
+    return getCell(index - yz * size, yz % size, yz / size);
+  }
+
+  /**
+   * Gets the packed cell at a location, without working out its index.
+   *
+   * @param x The X location in the {@code Cube}.
+   * @param y The Y location in the {@code Cube}.
+   * @param z The Z location in the {@code Cube}.
+   * @return the packed cell, or {@link Cube#EMPTY}.
+   */
+  public int getCell(int x, int y, int z)
+  {
+    if (bricksPerSide == 1)
+    {
+      short[] brick = bricks[0];
+      return brick == null ? EMPTY : brick[indexOf(x, y, z)] & 0xFFFF;
+    }
+    short[] brick = bricks[brickOf(x, y, z)];
+    return brick == null ? EMPTY : brick[slotOf(x, y, z)] & 0xFFFF;
+  }
+
+  /**
+   * Sets the packed cell at the given index. See {@link Cube#indexOf(int, int, int)}.
+   *
+   * @param index The index of the cell.
+   * @param cell  The new packed cell, or {@link Cube#EMPTY}.
+   */
+  public void setCell(int index, int cell)
+  {
+    int old;
+    if (bricksPerSide == 1)
+      old = setCell(0, index, cell);
+    else
+    {
+      int yz = index / size;
+      int x = index - yz * size;
+      int y = yz % size;
+      int z = yz / size;
+      old = setCell(brickOf(x, y, z), slotOf(x, y, z), cell);
+    }
+    if (old != cell)
+      hash ^= Zobrist.key(index, old) ^ Zobrist.key(index, cell);
+  }
+
+  /**
+   * Gets the Zobrist hash of the cells (see {@link Zobrist}), which is kept up to date as they change.
+   * <p>
+   * Two {@code Cube}s with the same cells have the same hash, however they store them. An empty {@code Cube} hashes to {@code 0}.
+   *
+   * @return the hash of the cells.
+   */
+  public long getHash()
+  {
+    return hash;
+  }
+
+  /**
+   * Sets a packed cell within a brick, making, copying, or dropping the brick as needed.
+   *
+   * @param b    The index of the brick.
+   * @param slot The index of the cell within the brick.
+   * @param cell The new packed cell, or {@link Cube#EMPTY}.
+   * @return the packed cell that was there before.
+   */
+  private int setCell(int b, int slot, int cell)
+  {
+    short[] brick = bricks[b];
+    if (brick == null)
+    {
+      if (cell == EMPTY)
+        return EMPTY;
+      brick = bricks[b] = new short[brickLength];
+      brickOwners[b] = owner;
+    }
+    int old = brick[slot] & 0xFFFF;
+    if (old == cell)
+      return old;
+
+    if (cell == EMPTY && --brickCounts[b] == 0)
+    {
+      // Don't copy a shared brick just to empty it.
+      bricks[b] = null;
+      return old;
+    }
+    if (old == EMPTY)
+      brickCounts[b]++;
+    if (brickOwners[b] != owner)
+    {
+      brick = bricks[b] = brick.clone();
+      brickOwners[b] = owner;
+    }
+    brick[slot] = (short) cell;
+    return old;
+  }
+
+  /**
+   * Shows every cell of the {@code Cube} that is not {@link Cube#EMPTY} to a {@link CellVisitor}, skipping over empty bricks, until it returns {@code false}.
+   * <p>
+   * Cells are visited brick by brick, not in the order of their index. The visitor may change the cells it is shown.
+   *
+   * @param visitor What to show the cells to.
+   * @return {@code false} if the visitor stopped early, otherwise {@code true}.
+   */
+  public boolean forEachCell(CellVisitor visitor)
+  {
+    int side = Math.min(size, BRICK_SIDE);
+    for (int b = 0; b < bricks.length; b++)
+    {
+      // Hold on to the brick, as the visitor could drop or copy it.
+      short[] brick = bricks[b];
+      if (brick == null)
+        continue;
+      if (bricksPerSide == 1)
+      {
+        for (int index = 0; index < volume; index++)
+          if (brick[index] != EMPTY && !visitor.visit(index, brick[index] & 0xFFFF))
+            return false;
+        continue;
+      }
+
+      int x0 = (b % bricksPerSide) << BRICK_BITS;
+      int y0 = ((b / bricksPerSide) % bricksPerSide) << BRICK_BITS;
+      int z0 = (b / (bricksPerSide * bricksPerSide)) << BRICK_BITS;
+      for (int dz = 0; dz < side && z0 + dz < size; dz++)
+        for (int dy = 0; dy < side && y0 + dy < size; dy++)
+          for (int dx = 0; dx < side && x0 + dx < size; dx++)
+          {
+            int cell = brick[dx | (dy << BRICK_BITS) | (dz << (2 * BRICK_BITS))];
+            if (cell != EMPTY && !visitor.visit(indexOf(x0 + dx, y0 + dy, z0 + dz), cell & 0xFFFF))
+              return false;
+          }
+    }
+    return true;
+  }
+
+  /**
+   * Gets how many bricks currently hold any cells, which is what the memory used by the {@code Cube} scales with.
+   *
+   * @return the number of bricks that are not empty.
+   */
+  public int occupiedBricks()
+  {
+    int count = 0;
+    for (short[] brick : bricks)
+      if (brick != null)
+        count++;
+    return count;
+  }
+
+  /**
+   * Gets the brick a location is in.
+   *
+   * @param x The X location in the {@code Cube}.
+   * @param y The Y location in the {@code Cube}.
+   * @param z The Z location in the {@code Cube}.
+   * @return the index of the brick in {@link Cube#bricks}.
+   */
+  private int brickOf(int x, int y, int z)
+  {
+    return (x >>> BRICK_BITS) + bricksPerSide * ((y >>> BRICK_BITS) + bricksPerSide * (z >>> BRICK_BITS));
+  }
+
+  /**
+   * Gets where a location is within its brick, when there is more than one brick.
+   *
+   * @param x The X location in the {@code Cube}.
+   * @param y The Y location in the {@code Cube}.
+   * @param z The Z location in the {@code Cube}.
+   * @return the index of the cell within its brick.
+   */
+  private static int slotOf(int x, int y, int z)
+  {
+    int mask = BRICK_SIDE - 1;
+    return (x & mask) | ((y & mask) << BRICK_BITS) | ((z & mask) << (2 * BRICK_BITS));
+  }
+
+  /**
+   * Gets the index of a location in the flat cell array.
+   *
+   * @param x The X location in the {@code Cube}.
+   * @param y The Y location in the {@code Cube}.
+   * @param z The Z location in the {@code Cube}.
+   * @return {@code x + size * (y + size * z)}.
+   */
+  public int indexOf(int x, int y, int z)
+  {
+    return x + size * (y + size * z);
+  }
+
+  /**
+   * Gets the number of cells in this {@code Cube}.
+   *
+   * @return {@code size * size * size}.
+   */
+  public int volume()
+  {
+    return volume;
+  }
+
   /**
    * Gets the size of this {@code Cube}.
    *
@@ -107,20 +476,181 @@ public class Cube
 
   /**
    * Creates a clone of the this {@code Cube} object.
+   * <p>
+   * No cells are copied: the clone shares this {@code Cube}'s bricks, and whichever of them writes to a shared brick first copies just that brick.
    *
    * @return The cloned object. See: {@link Object#clone()}
    */
   public Cube clone()
   {
-    Cube clone = new Cube(size);
-    for (int z = 0; z < size; z++)
-      for (int y = 0; y < size; y++)
-        for (int x = 0; x < size; x++)
-        {
-          Path old = get(x, y, z);
-          if (old != null)
-            clone.setPath(new Path(old.getType(), old.getColor(), old.getDirection()), x, y, z);
-        }
+    Cube clone = new Cube(this);
+    // Neither cube owns the bricks anymore, so both copy before writing.
+    owner = NEXT_OWNER.incrementAndGet();
     return clone;
   }
+
+  /**
+   * Creates a {@code Cube} that shares the bricks of another. Only to be used by {@link Cube#clone()}.
+   *
+   * @param other The {@code Cube} to share the bricks of.
+   */
+  private Cube(Cube other)
+  {
+    size = other.size;
+    volume = other.volume;
+    bricksPerSide = other.bricksPerSide;
+    brickLength = other.brickLength;
+    bricks = other.bricks.clone();
+    brickCounts = other.brickCounts.clone();
+    brickOwners = other.brickOwners.clone();
+    owner = NEXT_OWNER.incrementAndGet();
+    hash = other.hash;
+  }
+
+  /**
+   * Packs a {@link Path} into a single cell value.
+   *
+   * @param path The {@link Path} to pack. May be {@code null}.
+   * @return the packed cell, or {@link Cube#EMPTY} if {@code path} is {@code null}.
+   */
+  public static int encode(Path path)
+  {
+    if (path == null)
+      return EMPTY;
+    return encode(path.getType(), path.getColor(), path.getDirection());
+  }
+
+  /**
+   * Packs the parts of a {@link Path} into a single cell value.
+   *
+   * @param type      The {@link PathType} of the cell.
+   * @param color     The {@link PathColor} of the cell.
+   * @param direction The flow direction of the cell. May be {@code null}.
+   * @return the packed cell.
+   */
+  public static int encode(PathType type, PathColor color, PathDirection direction)
+  {
+    return ((color.getId() + 1) << COLOR_SHIFT) | (type == PathType.START ? START_BIT : 0) | (direction == null ? 0 : direction.ordinal() + 1);
+  }
+
+  /**
+   * Unpacks a cell value into its {@link Path}.
+   *
+   * @param cell The packed cell.
+   * @return the {@link Path}, or {@code null} if the cell is {@link Cube#EMPTY}.
+   */
+  public static Path decode(int cell)
+  {
+    if (cell == EMPTY)
+      return null;
+    return Path.get(typeOf(cell), colorOf(cell), directionOf(cell));
+  }
+
+  /**
+   * Gets the {@link PathColor} of a packed cell.
+   *
+   * @param cell The packed cell.
+   * @return the color of the cell, or {@code null} if it is {@link Cube#EMPTY}.
+   */
+  public static PathColor colorOf(int cell)
+  {
+    if (cell == EMPTY)
+      return null;
+    return PathColor.get((cell >>> COLOR_SHIFT) - 1);
+  }
+
+  /**
+   * Gets the {@link PathColor#getId()} of a packed cell, without unpacking it.
+   *
+   * @param cell The packed cell.
+   * @return the ordinal of the color of the cell, or {@code -1} if it is {@link Cube#EMPTY}.
+   */
+  public static int colorIndexOf(int cell)
+  {
+    return (cell >>> COLOR_SHIFT) - 1;
+  }
+
+  /**
+   * Gets the {@link PathType} of a packed cell.
+   *
+   * @param cell The packed cell.
+   * @return the type of the cell, or {@code null} if it is {@link Cube#EMPTY}.
+   */
+  public static PathType typeOf(int cell)
+  {
+    if (cell == EMPTY)
+      return null;
+    return (cell & START_BIT) != 0 ? PathType.START : PathType.PATH;
+  }
+
+  /**
+   * Checks if a packed cell is a {@link PathType#START}.
+   *
+   * @param cell The packed cell.
+   * @return whether the cell is a {@link PathType#START}.
+   */
+  public static boolean isStart(int cell)
+  {
+    return (cell & START_BIT) != 0;
+  }
+
+  /**
+   * Gets the flow direction of a packed cell.
+   *
+   * @param cell The packed cell.
+   * @return the flow direction of the cell, or {@code null} if it has none.
+   */
+  public static PathDirection directionOf(int cell)
+  {
+    int direction = cell & DIRECTION_MASK;
+    return direction == 0 ? null : DIRECTION_VALUES[direction - 1];
+  }
+
+  /**
+   * Changes the flow direction of a packed cell.
+   *
+   * @param cell      The packed cell.
+   * @param direction The new flow direction. May be {@code null}.
+   * @return the packed cell with the new direction.
+   */
+  public static int withDirection(int cell, PathDirection direction)
+  {
+    return (cell & ~DIRECTION_MASK) | (direction == null ? 0 : direction.ordinal() + 1);
+  }
+
+  /**
+   * Gets the direction of the previous cell in the flow of a packed cell. That is, the direction of the neighbour whose flow direction points to this cell.
+   *
+   * @param cell The packed cell.
+   * @return the direction the flow comes from, or {@code null} if nothing flows into the cell.
+   */
+  public static PathDirection previousOf(int cell)
+  {
+    int direction = (cell & PREVIOUS_MASK) >>> PREVIOUS_SHIFT;
+    return direction == 0 ? null : DIRECTION_VALUES[direction - 1];
+  }
+
+  /**
+   * Changes the direction of the previous cell in the flow of a packed cell.
+   *
+   * @param cell      The packed cell.
+   * @param direction The direction the flow comes from. May be {@code null}.
+   * @return the packed cell with the new previous direction.
+   */
+  public static int withPrevious(int cell, PathDirection direction)
+  {
+    return (cell & ~PREVIOUS_MASK) | (direction == null ? 0 : (direction.ordinal() + 1) << PREVIOUS_SHIFT);
+  }
+
+  /**
+   * Checks if a packed cell is of a given {@link PathColor}, without unpacking it.
+   *
+   * @param cell  The packed cell.
+   * @param color The {@link PathColor} to compare against.
+   * @return whether the cell is not {@link Cube#EMPTY} and is of the given color.
+   */
+  public static boolean isColor(int cell, PathColor color)
+  {
+    return (cell >>> COLOR_SHIFT) == color.getId() + 1;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,395 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * class DifficultySearch
+ * <p>
+ * Looks for {@link Level}s whose difficulty is in a given range, as random ones (see {@link LevelGenerator}) are mostly too easy.
+ * <p>
+ * Difficulty is measured by solving a {@link Level} with a {@link Solver}, and counting how many times it had to choose between moves because none was forced (see {@link Solver#getDecisions()}).
+ * Each {@link Level} only gets a short time to be solved; one that takes longer, or has no solution, is not kept.
+ * <p>
+ * The search is evolutionary. It starts with a population of generated {@link Level}s, and each generation makes as many children as there are {@link Level}s,
+ * each a copy of the better of two random {@link Level}s with its {@link PathType#START}s changed: one moved to a cell next to it, or two of different colors swapped.
+ * The best of the {@link Level}s and their children are kept for the next generation, and the rest are dropped.
+ * Children that are the same as another {@link Level} turned or with its colors swapped around (see {@link CanonicalForm}) are dropped too, so the population doesn't fill up with copies.
+ * <p>
+ * The children of a generation are rated at the same time, on every thread of a {@link ForkJoinPool}. Each child is made from the seed of the search, its generation and its place in it,
+ * so the search makes the same children however many threads there are.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public class DifficultySearch
+{
+  /**
+   * The default number of {@link Level}s in the population.
+   */
+  public static final int DEFAULT_POPULATION_SIZE = 32;
+  /**
+   * The default time each {@link Level} gets to be solved when it is rated, in nanoseconds.
+   */
+  public static final long DEFAULT_RATING_BUDGET = 20_000_000L;
+  /**
+   * How many more changes a child gets, at most, after its first.
+   */
+  private static final int MAX_EXTRA_MUTATIONS = 2;
+  /**
+   * How many times to try to move a {@link PathType#START} before giving up on the move.
+   */
+  private static final int MOVE_TRIES = 8;
+
+  /**
+   * The side length of the {@link Level}s.
+   */
+  private final int size;
+  /**
+   * How many colors the {@link Level}s have.
+   */
+  private final int colorCount;
+  /**
+   * The fewest decisions a {@link Level} may take to solve.
+   */
+  private final long minDecisions;
+  /**
+   * The most decisions a {@link Level} may take to solve.
+   */
+  private final long maxDecisions;
+  /**
+   * How many {@link Level}s are kept in each generation.
+   */
+  private int populationSize = DEFAULT_POPULATION_SIZE;
+  /**
+   * How long each {@link Level} gets to be solved when it is rated, in nanoseconds.
+   */
+  private long ratingBudget = DEFAULT_RATING_BUDGET;
+
+  /**
+   * Constructor for DifficultySearch
+   * <p>
+   * Creates a {@code DifficultySearch} for {@link Level}s of a size and number of colors, that take a number of decisions to solve within a range.
+   *
+   * @param size         The side length of the {@link Level}s.
+   * @param colorCount   How many colors the {@link Level}s have.
+   * @param minDecisions The fewest decisions a {@link Level} may take to solve.
+   * @param maxDecisions The most decisions a {@link Level} may take to solve. Use {@link Long#MAX_VALUE} for no limit.
+   * @throws IllegalArgumentException if the range of decisions is empty, or there can't be a {@link Level} of that size and number of colors. See {@link LevelGenerator}.
+   */
+  public DifficultySearch(int size, int colorCount, long minDecisions, long maxDecisions)
+  {
+    if (minDecisions < 0 || maxDecisions < minDecisions)
+      throw new IllegalArgumentException("There are no levels with between " + minDecisions + " and " + maxDecisions + " decisions!");
+    // Checks the size and number of colors.
+    new LevelGenerator(size, colorCount);
+    this.size = size;
+    this.colorCount = colorCount;
+    this.minDecisions = minDecisions;
+    this.maxDecisions = maxDecisions;
+  }
+
+  /**
+   * Sets how many {@link Level}s are kept in each generation. This is also how many are returned by {@link DifficultySearch#search(long, long)}, at most.
+   *
+   * @param populationSize The size of the population. At least 2.
+   */
+  public void setPopulationSize(int populationSize)
+  {
+    if (populationSize < 2)
+      throw new IllegalArgumentException("A population needs at least two levels!");
+    this.populationSize = populationSize;
+  }
+
+  /**
+   * Sets how long each {@link Level} gets to be solved when it is rated. A {@link Level} that takes longer is not kept.
+   *
+   * @param ratingBudget The time each {@link Level} gets, in nanoseconds.
+   */
+  public void setRatingBudget(long ratingBudget)
+  {
+    if (ratingBudget <= 0)
+      throw new IllegalArgumentException("A level can't be rated in " + ratingBudget + " nanoseconds.");
+    this.ratingBudget = ratingBudget;
+  }
+
+  /**
+   * Searches for {@link Level}s in the range of decisions, with every thread of the common {@link ForkJoinPool}.
+   *
+   * @param seed   The seed of the search.
+   * @param budget How long to search for, in nanoseconds.
+   * @return the best {@link Level}s found, best first: the ones in the range of decisions, then the ones closest to it. Every one has been solved.
+   */
+  public List<RatedLevel> search(long seed, long budget)
+  {
+    return search(seed, budget, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Searches for {@link Level}s in the range of decisions, with every thread of a given {@link ForkJoinPool}.
+   *
+   * @param seed   The seed of the search.
+   * @param budget How long to search for, in nanoseconds.
+   * @param pool   The pool to rate {@link Level}s in.
+   * @return the best {@link Level}s found, best first: the ones in the range of decisions, then the ones closest to it. Every one has been solved.
+   */
+  public List<RatedLevel> search(long seed, long budget, ForkJoinPool pool)
+  {
+    long deadline = System.nanoTime() + budget;
+    List<Level> generated = new LevelGenerator(size, colorCount).generate(seed, populationSize, pool);
+    Point3I[][] starts = new Point3I[populationSize][];
+    for (int i = 0; i < populationSize; i++)
+      starts[i] = startsOf(generated.get(i));
+    RatedLevel[] population = rateAll(starts, deadline, pool);
+
+    Comparator<RatedLevel> order = Comparator.comparingLong(this::distance).thenComparing(Comparator.comparingLong(RatedLevel::getDecisions).reversed());
+    List<RatedLevel> kept = select(population, new RatedLevel[0], order);
+    for (long generation = 1; System.nanoTime() - deadline < 0 && !kept.isEmpty(); generation++)
+    {
+      Point3I[][] children = new Point3I[populationSize][];
+      for (int i = 0; i < populationSize; i++)
+      {
+        SplittableRandom random = new SplittableRandom(LevelGenerator.seedOf(seed ^ Zobrist.mix(generation), i));
+        RatedLevel a = kept.get(random.nextInt(kept.size()));
+        RatedLevel b = kept.get(random.nextInt(kept.size()));
+        children[i] = mutate(startsOf(order.compare(a, b) <= 0 ? a.getLevel() : b.getLevel()), random);
+      }
+      RatedLevel[] rated = rateAll(children, deadline, pool);
+      kept = select(kept.toArray(new RatedLevel[0]), rated, order);
+    }
+    return kept;
+  }
+
+  /**
+   * Rates a {@link Level} by solving it.
+   *
+   * @param level  The {@link Level}. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   * @param budget How long the {@link Solver} gets, in nanoseconds.
+   * @return the {@link RatedLevel}. It is {@link SolverStatus#STOPPED} if the time ran out.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public static RatedLevel rate(Level level, long budget)
+  {
+    Solver solver = new Solver(level);
+    solver.setDeadline(System.nanoTime() + budget);
+    SolverResult result = solver.solve();
+    return new RatedLevel(level, result.getStatus(), solver.getDecisions(), result.getNodes());
+  }
+
+  /**
+   * Gets how far a {@link RatedLevel} is from the range of decisions.
+   *
+   * @param rated The {@link RatedLevel}.
+   * @return {@code 0} if it is in the range, otherwise how many decisions it is out by.
+   */
+  private long distance(RatedLevel rated)
+  {
+    if (rated.getDecisions() < minDecisions)
+      return minDecisions - rated.getDecisions();
+    if (rated.getDecisions() > maxDecisions)
+      return rated.getDecisions() - maxDecisions;
+    return 0;
+  }
+
+  /**
+   * Picks the {@link Level}s to keep for the next generation: the best {@link DifficultySearch#populationSize} solved ones, with no two the same.
+   *
+   * @param population The {@link Level}s of this generation.
+   * @param children   Their children.
+   * @param order      Which {@link Level}s are better.
+   * @return the {@link Level}s to keep, best first.
+   */
+  private List<RatedLevel> select(RatedLevel[] population, RatedLevel[] children, Comparator<RatedLevel> order)
+  {
+    List<RatedLevel> candidates = new ArrayList<>(population.length + children.length);
+    for (RatedLevel rated : population)
+      if (rated.isSolved())
+        candidates.add(rated);
+    for (RatedLevel rated : children)
+      if (rated.isSolved())
+        candidates.add(rated);
+    candidates.sort(order);
+
+    List<RatedLevel> kept = new ArrayList<>(populationSize);
+    Set<CanonicalForm> seen = new HashSet<>();
+    for (RatedLevel rated : candidates)
+      if (kept.size() < populationSize && seen.add(CanonicalForm.of(rated.getLevel())))
+        kept.add(rated);
+    return kept;
+  }
+
+  /**
+   * Rates {@link Level}s on every thread of a pool.
+   *
+   * @param starts   The {@link PathType#START}s of each {@link Level}, in pairs of the same color.
+   * @param deadline The {@link System#nanoTime()} that no rating may go past.
+   * @param pool     The pool to rate them in.
+   * @return the {@link RatedLevel}s, in the same order.
+   */
+  private RatedLevel[] rateAll(Point3I[][] starts, long deadline, ForkJoinPool pool)
+  {
+    RatedLevel[] rated = new RatedLevel[starts.length];
+    pool.invoke(new RateTask(starts, rated, deadline, 0, starts.length));
+    return rated;
+  }
+
+  /**
+   * Makes a changed copy of the {@link PathType#START}s of a {@link Level}: one or more of them moved to a cell next to it, or swapped with one of another color.
+   *
+   * @param parent The {@link PathType#START}s to change, in pairs of the same color. Not changed.
+   * @param random Where to get random numbers from.
+   * @return the changed {@link PathType#START}s.
+   */
+  private Point3I[] mutate(Point3I[] parent, SplittableRandom random)
+  {
+    Point3I[] child = parent.clone();
+    int mutations = 1 + random.nextInt(MAX_EXTRA_MUTATIONS + 1);
+    for (int m = 0; m < mutations; m++)
+    {
+      int a = random.nextInt(child.length);
+      if (colorCount > 1 && random.nextBoolean())
+      {
+        // Swap with a start of another color.
+        int b = random.nextInt(child.length - 2);
+        if (b / 2 >= a / 2)
+          b += 2;
+        Point3I swap = child[a];
+        child[a] = child[b];
+        child[b] = swap;
+      }
+      else
+        for (int tries = 0; tries < MOVE_TRIES; tries++)
+        {
+          PathDirection direction = PathDirection.DIRECTIONS[random.nextInt(PathDirection.DIRECTIONS.length)];
+          Point3I moved = child[a].add(direction.getDX(), direction.getDY(), direction.getDZ());
+          if (isFree(child, moved))
+          {
+            child[a] = moved;
+            break;
+          }
+        }
+    }
+    return child;
+  }
+
+  /**
+   * Checks if a {@link PathType#START} can be moved to a location.
+   *
+   * @param starts   The {@link PathType#START}s.
+   * @param location The location.
+   * @return whether the location is in the cube and has no {@link PathType#START} in it.
+   */
+  private boolean isFree(Point3I[] starts, Point3I location)
+  {
+    if (location.getX() < 0 || location.getY() < 0 || location.getZ() < 0 || location.getX() >= size || location.getY() >= size || location.getZ() >= size)
+      return false;
+    for (Point3I start : starts)
+      if (start.getX() == location.getX() && start.getY() == location.getY() && start.getZ() == location.getZ())
+        return false;
+    return true;
+  }
+
+  /**
+   * Gets the {@link PathType#START}s of a {@link Level}, in pairs of the same color, in order of {@link PathColor#getId()}.
+   *
+   * @param level The {@link Level}.
+   * @return the location of each {@link PathType#START}, so that {@link Level#Level(int, Point3I[])} makes the same {@link Level} again.
+   */
+  private static Point3I[] startsOf(Level level)
+  {
+    int size = level.size();
+    Point3I[] firstStarts = new Point3I[PathColor.MAX_COUNT];
+    Point3I[] secondStarts = new Point3I[PathColor.MAX_COUNT];
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+        {
+          Path path = level.getPath(x, y, z);
+          if (path != null && path.getType() == PathType.START)
+          {
+            int id = path.getColor().getId();
+            if (firstStarts[id] == null)
+              firstStarts[id] = new Point3I(x, y, z);
+            else
+              secondStarts[id] = new Point3I(x, y, z);
+          }
+        }
+    List<Point3I> starts = new ArrayList<>();
+    for (int id = 0; id < PathColor.MAX_COUNT; id++)
+      if (firstStarts[id] != null)
+      {
+        starts.add(firstStarts[id]);
+        starts.add(secondStarts[id]);
+      }
+    return starts.toArray(new Point3I[0]);
+  }
+
+  /**
+   * class RateTask
+   * <p>
+   * Rates a range of {@link Level}s, splitting it in half for other threads to steal while it is big.
+   */
+  private class RateTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The {@link PathType#START}s of each {@link Level}.
+     */
+    private final Point3I[][] starts;
+    /**
+     * Where to put the {@link RatedLevel}s.
+     */
+    private final RatedLevel[] rated;
+    /**
+     * The {@link System#nanoTime()} that no rating may go past.
+     */
+    private final long deadline;
+    /**
+     * The first {@link Level} of the range.
+     */
+    private final int from;
+    /**
+     * One past the last {@link Level} of the range.
+     */
+    private final int to;
+
+    /**
+     * Creates a task that rates a range of {@link Level}s.
+     *
+     * @param starts   The {@link PathType#START}s of each {@link Level}.
+     * @param rated    Where to put the {@link RatedLevel}s.
+     * @param deadline The {@link System#nanoTime()} that no rating may go past.
+     * @param from     The first {@link Level} of the range.
+     * @param to       One past the last {@link Level} of the range.
+     */
+    RateTask(Point3I[][] starts, RatedLevel[] rated, long deadline, int from, int to)
+    {
+      this.starts = starts;
+      this.rated = rated;
+      this.deadline = deadline;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from == 1)
+      {
+        Level level = new Level(size, starts[from]);
+        rated[from] = rate(level, Math.max(1, Math.min(ratingBudget, deadline - System.nanoTime())));
+        return;
+      }
+      if (to - from > 1)
+      {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RateTask(starts, rated, deadline, from, middle), new RateTask(starts, rated, deadline, middle, to));
+      }
+    }
+  }
+}
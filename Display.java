@@ -391,6 +391,27 @@ public class Display
     glColor3f(r / 255f, g / 255f, b / 255f);
   }
 
+  /**
+   * Sets the color to draw without transparency.
+   *
+   * @param rgb The red, green and blue of the color, between 0 and 1, such as from {@link PathColor#toGL()}.
+   */
+  public static void setColor3(float[] rgb)
+  {
+    glColor3f(rgb[0], rgb[1], rgb[2]);
+  }
+
+  /**
+   * Sets the color to draw with transparency.
+   *
+   * @param rgb The red, green and blue of the color, between 0 and 1, such as from {@link PathColor#toGL()}.
+   * @param a   A value between 0 and 255 for the alpha component of the color. Transparency, with 0 being fully transparent and 255 being opaque.
+   */
+  public static void setColor4(float[] rgb, int a)
+  {
+    glColor4f(rgb[0], rgb[1], rgb[2], a / 255f);
+  }
+
   /**
    * Sets the color to draw with transparency.
    *
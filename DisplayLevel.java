@@ -2,18 +2,25 @@ import org.lwjgl.glfw.GLFW;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 
-import static org.lwjgl.glfw.GLFW.GLFW_MOUSE_BUTTON_1;
+import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
 
 /**
  * class DisplayLevel
  * <p>
  * The window data and layout for the window of the active game, with one level displayed.
+ * <p>
+ * Cells that stop the level from being solved the way it is drawn (dead ends, regions no flow can fill, and the heads of flows that can't reach their other end) are shaded red as a warning. See {@link Connectivity}.
+ * The warnings are worked out when a drag ends, not on every frame of it, and are hidden while the user is dragging.
+ * <p>
+ * Pressing H asks for a hint, which is worked out on another thread (see {@link HintService}) and shaded in the color of its flow once it is ready.
  *
  * @author Stanley S.
- * @version 1.9
+ * @version 2.4
  */
 public class DisplayLevel extends DisplayableWindow
 {
@@ -35,6 +42,31 @@ public class DisplayLevel extends DisplayableWindow
    * The path of points of which the user has dragged.
    */
   private LinkedList<Point3I> dragPath;
+  /**
+   * The same points as {@link DisplayLevel#dragPath}, to quickly check if a point is in it.
+   */
+  private HashSet<Point3I> dragCells = new HashSet<>();
+  /**
+   * Whether {@link DisplayLevel#dragPath} has changed since it was last drawn onto {@link DisplayLevel#lvl}.
+   */
+  private boolean dragChanged;
+  /**
+   * Whether each cell of {@link DisplayLevel#lvl} is shaded as a warning, by index. {@code null} if there are no warnings to show.
+   */
+  private boolean[] warnings;
+  /**
+   * Works out {@link DisplayLevel#warnings}. Made once, and reused for every change to {@link DisplayLevel#lvl}.
+   */
+  private Connectivity connectivity;
+  /**
+   * The hint being shown, or {@code null} if there is none. Picked up from {@link DisplayLevel#HINTS} every frame.
+   */
+  private FlowMove hint;
+
+  /**
+   * Works out hints off the render thread. Shared by every level, so there is only ever one hint thread.
+   */
+  private static final HintService HINTS = new HintService();
 
   /**
    * The fade-in effect when opening the level for the first time, and fade-out effect upon winning the level.
@@ -84,6 +116,7 @@ public class DisplayLevel extends DisplayableWindow
     lvl = level;
     layer = 0;
     old = lvl.clone();
+    updateWarnings();
   }
 
   /**
@@ -115,13 +148,18 @@ public class DisplayLevel extends DisplayableWindow
         if (flow != null && flow.contains(cell) && path.getType() != PathType.START)
         {
           dragPath = flow;
+          dragCells.clear();
+          dragCells.addAll(flow);
           doDrag(location);
         }
         else
         {
           dragPath = new LinkedList<>();
-          dragPath.add(getSquare(location));
+          dragPath.add(cell);
+          dragCells.clear();
+          dragCells.add(cell);
         }
+        dragChanged = true;
       }
     }
   }
@@ -143,9 +181,11 @@ public class DisplayLevel extends DisplayableWindow
 
     if (cell != null && !dragPath.getLast().equals(cell))
     {
-      while (dragPath.contains(cell))
-        dragPath.removeLast();
+      while (dragCells.contains(cell))
+        dragCells.remove(dragPath.removeLast());
       dragPath.add(cell);
+      dragCells.add(cell);
+      dragChanged = true;
       if (Driver.DEBUG)
       {
         System.out.print("The drag path is: [");
@@ -168,9 +208,13 @@ public class DisplayLevel extends DisplayableWindow
   {
     if (dragPath != null)
     {
+      // Draw onto the level from before the drag, so the drag can be undone. See keyPress(int, int).
+      lvl = old;
       makeDragPermanent();
+      lvl.checkpoint();
       dragPath = null;
-      old = lvl;
+      dragChanged = false;
+      updateWarnings();
     }
 
     if (old.checkWin())
@@ -180,6 +224,30 @@ public class DisplayLevel extends DisplayableWindow
     }
   }
 
+  /**
+   * When the user presses Z, undo the last drag. When they press Y, redo it. When they press F, fill in every move that is forced (see {@link ForcedMoves}). When they press H, ask for a hint.
+   *
+   * @param key    The key that is pressed. See {@link org.lwjgl.glfw.GLFW#GLFW_KEY_SPACE} through {@link org.lwjgl.glfw.GLFW#GLFW_KEY_WORLD_2}.
+   * @param action The action taken. One of: {@link org.lwjgl.glfw.GLFW#GLFW_PRESS},
+   *               {@link org.lwjgl.glfw.GLFW#GLFW_RELEASE}, or {@link org.lwjgl.glfw.GLFW#GLFW_REPEAT}.
+   */
+  public void keyPress(int key, int action)
+  {
+    if (action == GLFW_RELEASE || dragPath != null)
+      return;
+
+    if (key == GLFW_KEY_Z)
+      old.undo();
+    if (key == GLFW_KEY_Y)
+      old.redo();
+    if (key == GLFW_KEY_F && action == GLFW_PRESS)
+      fillForcedMoves();
+    if (key == GLFW_KEY_H && action == GLFW_PRESS)
+      HINTS.request(old);
+    lvl = old;
+    updateWarnings();
+  }
+
   /**
    * When the user attempts to scroll, this will be
    * called. Warning: This is asynchronous, and can happen
@@ -225,14 +293,19 @@ public class DisplayLevel extends DisplayableWindow
     Display.setColor3(new Color(191, 191, 191));
     Display.drawRectangleOr(displayLocations_LeftBarWidth, displayLocations_WindowCenterY, 2, displayLocations_WindowHeight, true);
 
-    // Update paths for top layer. This is the largest waste of CPU I could come up with. All that cloneing.
-    if (dragPath != null)
+    // Update paths for top layer, only when the drag has changed. Cloning shares the cells of the level until they are drawn over (see Cube#clone()).
+    if (dragPath != null && dragChanged)
     {
+      dragChanged = false;
       lvl = old.clone();
       LinkedList<Point3I> cpy = (LinkedList<Point3I>) dragPath.clone();
       makeDragPermanent();
       dragPath = cpy;
+      // Working out the warnings waits for the drag to end (see doRelease(int, Point)), so dragging doesn't hold up the frame.
+      HINTS.cancelStale(lvl);
+      warnings = null;
     }
+    hint = HINTS.getHint(lvl);
 
     // Left bar and layers within
     for (int i = layer; i > layer - lvl.size(); i--)
@@ -326,6 +399,43 @@ public class DisplayLevel extends DisplayableWindow
 
 
 
+  /**
+   * Draws in every forced move of the level, as one step that can be undone.
+   */
+  private void fillForcedMoves()
+  {
+    try
+    {
+      List<FlowMove> moves = ForcedMoves.propagate(old);
+      if (Driver.DEBUG) System.out.println("Filled in " + moves.size() + " forced moves.");
+      old.checkpoint();
+    }
+    catch (IllegalArgumentException e)
+    {
+      // A level without exactly two starts of each color can't be filled in.
+    }
+  }
+
+  /**
+   * Works out which cells of {@link DisplayLevel#lvl} to shade as warnings, and stops working on a hint for how it was before. Should be called whenever it changes, except during a drag.
+   */
+  private void updateWarnings()
+  {
+    HINTS.cancelStale(lvl);
+    try
+    {
+      SearchState state = new SearchState(lvl, true);
+      if (connectivity == null)
+        connectivity = new Connectivity(state.volume);
+      warnings = connectivity.findProblems(state);
+    }
+    catch (IllegalArgumentException e)
+    {
+      // A level without exactly two starts of each color can't be checked.
+      warnings = null;
+    }
+  }
+
   /**
    * Takes the drag path and applies it to the current level.
    */
@@ -351,13 +461,7 @@ public class DisplayLevel extends DisplayableWindow
       {
         dragPath.remove(i--);
       }
-      Point3I here = dragPath.get(i);
-      boolean nextTo = false;
-      here = dragPath.get(i - 1).add(-here.getX(), -here.getY(), -here.getZ());
-      for (PathDirection pdir : PathDirection.DIRECTIONS)
-        if (
-            pdir.move(new Point3I()).equals(here)) nextTo = true;
-      if (!nextTo)
+      if (PathDirection.between(dragPath.get(i - 1), dragPath.get(i)) == null)
         dragPath.remove(i--);
     }
 
@@ -373,22 +477,16 @@ public class DisplayLevel extends DisplayableWindow
       {
 
         // Remove any elements in the cutoffflow after this point.
-        LinkedList<Point3I> flow = lvl.getFlowPath(pathToReplace.getColor());
-        if (flow != null && flow.contains(dragPathi))
+        Point3I next = lvl.getNextInFlow(dragPathi);
+        while (next != null && lvl.isDrawable(next))
         {
-          while (!flow.getFirst().equals(dragPathi))
-            flow.removeFirst();
-          flow.removeFirst();
-
-          for (Point3I pt : flow)
-            if (lvl.isDrawable(pt))
-              lvl.deletePath(pt);
+          Point3I after = lvl.getNextInFlow(next);
+          lvl.deletePath(next);
+          next = after;
         }
 
         // The one before it should no longer point to the one that isn't there.
-        Path previousCutOff = lvl.getPath(lvl.getPreviousInFlow(dragPathi));
-        if (previousCutOff != null)
-          previousCutOff.setDirection(null);
+        lvl.setDirection(lvl.getPreviousInFlow(dragPathi), null);
         if (lvl.isDrawable(dragPathi))
           lvl.deletePath(dragPathi);
       }
@@ -398,15 +496,15 @@ public class DisplayLevel extends DisplayableWindow
       {
         if (lvl.getPath(dragPathi).getColor() == clr)
         {
-          lvl.getPath(dragPathiPrev).setDirection(PathDirection.getDirection(dragPathiPrev, dragPathi));
-          lvl.getPath(dragPathi).setDirection(null);
+          lvl.setDirection(dragPathiPrev, PathDirection.getDirection(dragPathiPrev, dragPathi));
+          lvl.setDirection(dragPathi, null);
         }
         i = dragPath.size();
       }
       else
       {
         lvl.setPath(dragPathi, clr, null);
-        lvl.getPath(dragPathiPrev).setDirection(PathDirection.getDirection(dragPathiPrev, dragPathi));
+        lvl.setDirection(dragPathiPrev, PathDirection.getDirection(dragPathiPrev, dragPathi));
       }
     }
 
@@ -430,11 +528,25 @@ public class DisplayLevel extends DisplayableWindow
         if (old.getPath(x, y, layer) != null)
         {
           Display.enableTransparency();
-          Display.setColor4(old.getPath(x, y, layer).getColor().toColor(), 63);
+          Display.setColor4(old.getPath(x, y, layer).getColor().toGL(), 63);
+          Display.drawRectangleOr((int) (xPos + (x + .5) * width / lvl.size()), (int) (yPos + (y + .5) * width / lvl.size()), (int) (width / lvl.size()), (int) (width / lvl.size()), true);
+          Display.disableTransparency();
+        }
+        if (warnings != null && warnings[lvl.indexOf(x, y, layer)])
+        {
+          Display.enableTransparency();
+          Display.setColor4(255, 0, 0, 95);
+          Display.drawRectangleOr((int) (xPos + (x + .5) * width / lvl.size()), (int) (yPos + (y + .5) * width / lvl.size()), (int) (width / lvl.size()), (int) (width / lvl.size()), true);
+          Display.disableTransparency();
+        }
+        if (hint != null && hint.getTo().getX() == x && hint.getTo().getY() == y && hint.getTo().getZ() == layer)
+        {
+          Display.enableTransparency();
+          Display.setColor4(hint.getColor().toGL(), 127);
           Display.drawRectangleOr((int) (xPos + (x + .5) * width / lvl.size()), (int) (yPos + (y + .5) * width / lvl.size()), (int) (width / lvl.size()), (int) (width / lvl.size()), true);
           Display.disableTransparency();
         }
-        drawPath(new Point3I(x, y, layer), xPos + x * width / lvl.size(), yPos + y * width / lvl.size(), width / lvl.size());
+        drawPath(x, y, layer, xPos + x * width / lvl.size(), yPos + y * width / lvl.size(), width / lvl.size());
       }
 
     drawGrid(xPos, yPos, width);
@@ -476,20 +588,22 @@ public class DisplayLevel extends DisplayableWindow
   /**
    * Draws a specified path at a specific location and size.
    *
-   * @param pt    The location of the path to be drawn.
+   * @param x     The X location of the path to be drawn.
+   * @param y     The Y location of the path to be drawn.
+   * @param z     The Z location of the path to be drawn.
    * @param xPos  The X position of the center of the path to be drawn.
    * @param yPos  The Y position of the center of the path to be drawn.
    * @param width The width in pixels of the size of the path to be drawn.
    */
-  private void drawPath(Point3I pt, double xPos, double yPos, double width)
+  private void drawPath(int x, int y, int z, double xPos, double yPos, double width)
   {
     xPos += width / 2D;
     yPos += width / 2D;
-    Path path = lvl.getPath(pt);
+    Path path = lvl.getPath(x, y, z);
     if (path != null)
     {
 
-      Display.setColor3(path.getColor().toColor());
+      Display.setColor3(path.getColor().toGL());
 
       if (path.getType() == PathType.START)
         Display.doCircle(xPos, yPos, width / 3D, true);
@@ -537,7 +651,7 @@ public class DisplayLevel extends DisplayableWindow
           default:
         }
 
-        Display.setColor3(path.getColor().toColor().darker());
+        Display.setColor3(path.getColor().toDarkerGL());
         switch (nextDirection)
         {
           case IN:
@@ -559,11 +673,12 @@ public class DisplayLevel extends DisplayableWindow
     }
 
     // The ones above.
-    path = lvl.getPath(PathDirection.IN.move(pt));
+    Path here = lvl.getPath(x, y, z);
+    path = lvl.getPath(x, y, z + PathDirection.IN.getDZ());
     if (path != null)
     {
-      Display.setColor3(path.getColor().toColor().darker());
-      if (lvl.getPath(pt) != null && path.getColor() == lvl.getPath(pt).getColor() && path.getDirection() == PathDirection.OUT)
+      Display.setColor3(path.getColor().toDarkerGL());
+      if (here != null && path.getColor() == here.getColor() && path.getDirection() == PathDirection.OUT)
       {
         glBegin(GL_TRIANGLES);
         Display.doPointOr(xPos - width / 5D, yPos + width / 4D);
@@ -576,11 +691,11 @@ public class DisplayLevel extends DisplayableWindow
     }
 
     // The ones below
-    path = lvl.getPath(PathDirection.OUT.move(pt));
+    path = lvl.getPath(x, y, z + PathDirection.OUT.getDZ());
     if (path != null)
     {
-      Display.setColor3(path.getColor().toColor().darker());
-      if (lvl.getPath(pt) != null && path.getColor() == lvl.getPath(pt).getColor() && path.getDirection() == PathDirection.IN)
+      Display.setColor3(path.getColor().toDarkerGL());
+      if (here != null && path.getColor() == here.getColor() && path.getDirection() == PathDirection.IN)
       {
         glBegin(GL_TRIANGLES);
         Display.doPointOr(xPos - width / 5D, yPos - width / 4D);
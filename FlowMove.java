@@ -0,0 +1,85 @@
+/**
+ * class FlowMove
+ * <p>
+ * One step of a flow: a color drawn from one cell into the cell next to it. See {@link ForcedMoves#propagate(Level)}.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public final class FlowMove
+{
+  /**
+   * The color that was drawn.
+   */
+  private final PathColor color;
+  /**
+   * The cell the flow was drawn from.
+   */
+  private final Point3I from;
+  /**
+   * The cell the flow was drawn into.
+   */
+  private final Point3I to;
+
+  /**
+   * Constructor for FlowMove
+   * <p>
+   * Creates a {@code FlowMove} of a color from one cell into a cell next to it.
+   *
+   * @param color The color that was drawn.
+   * @param from  The cell the flow was drawn from.
+   * @param to    The cell the flow was drawn into.
+   */
+  public FlowMove(PathColor color, Point3I from, Point3I to)
+  {
+    this.color = color;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Gets the color that was drawn.
+   *
+   * @return the {@link PathColor} of the move.
+   */
+  public PathColor getColor()
+  {
+    return color;
+  }
+
+  /**
+   * Gets the cell the flow was drawn from.
+   *
+   * @return the location of the cell.
+   */
+  public Point3I getFrom()
+  {
+    return from;
+  }
+
+  /**
+   * Gets the cell the flow was drawn into.
+   *
+   * @return the location of the cell.
+   */
+  public Point3I getTo()
+  {
+    return to;
+  }
+
+  /**
+   * Gets which way the flow was drawn.
+   *
+   * @return the {@link PathDirection} from {@link FlowMove#getFrom()} to {@link FlowMove#getTo()}.
+   */
+  public PathDirection getDirection()
+  {
+    return PathDirection.between(from, to);
+  }
+
+  @Override
+  public String toString()
+  {
+    return color + " " + from + " -> " + to;
+  }
+}
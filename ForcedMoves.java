@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class ForcedMoves
+ * <p>
+ * Finds the moves that have to be made, because there is only one way a flow can go, and makes them until there are no more.
+ * <p>
+ * Two kinds of move are forced:
+ * <ul>
+ * <li>the head of a flow has only one neighbour it can move into (a corner, or boxed in on five sides);</li>
+ * <li>an empty cell next to the head of a flow has only two open neighbours (see {@link SearchState#support}), one of them the head. The cell has to join onto both, so the head has to move into it.</li>
+ * </ul>
+ * Neighbours are the same as everywhere else, over {@link PathDirection#DIRECTIONS}.
+ * The {@link Solver} makes one forced move at a time instead of branching, and {@link ForcedMoves#propagate(Level)} fills in the forced parts of a {@link Level} for the player.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public final class ForcedMoves
+{
+  /**
+   * What {@link ForcedMoves#find(SearchState)} returns when there is no forced move.
+   */
+  static final int NONE = -1;
+  /**
+   * What {@link ForcedMoves#find(SearchState)} returns when the state can't lead to a solution: a flow can't move, or there is a dead end.
+   */
+  static final int CONTRADICTION = -2;
+
+  /**
+   * There is no need for an instance of this class.
+   */
+  private ForcedMoves()
+  {
+  }
+
+  /**
+   * Finds a forced move in a state.
+   *
+   * @param state The state.
+   * @return the move, as {@code color * volume + cell}; or {@link ForcedMoves#NONE} or {@link ForcedMoves#CONTRADICTION}.
+   */
+  static int find(SearchState state)
+  {
+    if (state.deadEnds > 0)
+      return CONTRADICTION;
+    int forced = NONE;
+    for (int c = 0; c < state.colorCount; c++)
+    {
+      if (state.connected[c])
+        continue;
+      int head = state.heads[c] * SearchState.DIRECTION_COUNT;
+      int options = 0;
+      int only = -1;
+      for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+      {
+        int neighbour = state.neighbours[head + d];
+        if (neighbour < 0 || !state.isOpen(c, neighbour))
+          continue;
+        options++;
+        only = neighbour;
+        if (forced == NONE && state.cells[neighbour] == SearchState.EMPTY && state.support[neighbour] == 2)
+          forced = c * state.volume + neighbour;
+      }
+      if (options == 0)
+        return CONTRADICTION;
+      if (options == 1 && forced == NONE)
+        forced = c * state.volume + only;
+    }
+    return forced;
+  }
+
+  /**
+   * Makes forced moves in a state until there are none left.
+   *
+   * @param state The state. The moves are pushed onto it.
+   * @return {@code false} if the state turned out not to lead to a solution, otherwise {@code true}.
+   */
+  static boolean propagate(SearchState state)
+  {
+    while (!state.isSolved())
+    {
+      int move = find(state);
+      if (move == CONTRADICTION)
+        return false;
+      if (move == NONE)
+        return true;
+      state.push(move / state.volume, move % state.volume);
+    }
+    return true;
+  }
+
+  /**
+   * Makes every forced move in a {@link Level}, carrying on from the flows already drawn, and draws them in.
+   * <p>
+   * Stops early if the {@link Level} turns out not to be solvable the way it is drawn, keeping the moves made so far.
+   *
+   * @param level The {@link Level}. Its flows are drawn further.
+   * @return the moves that were made, in the order they were made.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public static List<FlowMove> propagate(Level level)
+  {
+    SearchState state = new SearchState(level, true);
+    int first = state.depth;
+    propagate(state);
+
+    List<FlowMove> moves = new ArrayList<>();
+    boolean[] changed = new boolean[state.colorCount];
+    for (int i = first; i < state.depth; i++)
+    {
+      int c = state.moveColors[i];
+      moves.add(new FlowMove(state.colors[c], state.locationOf(state.movePreviousHeads[i]), state.locationOf(state.moveCells[i])));
+      changed[c] = true;
+    }
+
+    int[] flow = new int[state.volume];
+    for (int c = 0; c < state.colorCount; c++)
+      if (changed[c])
+      {
+        int length = 0;
+        flow[length++] = state.origins[c];
+        for (int i = 0; i < state.depth; i++)
+          if (state.moveColors[i] == c)
+            flow[length++] = state.moveCells[i];
+        level.setFlow(flow, length);
+      }
+    return moves;
+  }
+}
@@ -0,0 +1,341 @@
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * class HintService
+ * <p>
+ * Works out a next move for the player: the next cell of some color that leads to a solution of the {@link Level} as it is drawn.
+ * <p>
+ * Hints are worked out on a thread of their own, so asking for one never holds up the display. {@link HintService#request(Level)} returns straight away,
+ * and the hint is picked up later with {@link HintService#getHint(Level)}, which only returns it while the {@link Level} is still the one it was asked for,
+ * or waited for with {@link HintService#awaitHint(Level)}, which gives up once the time budget of the request is over.
+ * The search itself goes on past the budget until it finds the hint or the board changes, so a hard board still gets its hint, only later.
+ * Asking for a hint for another board, or {@link HintService#cancelStale(Level)} after the board has changed, stops the one before it.
+ * <p>
+ * The hint is found by searching on from the flows already drawn (see {@link Solver}). If they can't be finished, the {@link Level} is solved from its {@link PathType#START}s instead,
+ * and the hint is the first cell where a drawn flow goes a different way from the solution.
+ * <p>
+ * Hints are kept by the hash of the board they are for (see {@link Level#getHash()}), so asking again for a board that was already worked out is instant.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class HintService
+{
+  /**
+   * The default time budget of a hint, in nanoseconds: 5 milliseconds, well within a frame. See {@link HintService#awaitHint(Level)}.
+   */
+  public static final long DEFAULT_BUDGET = 5_000_000L;
+  /**
+   * How many boards to keep the hints of.
+   */
+  private static final int CACHE_SIZE = 256;
+  /**
+   * Kept for a board that was found to have no hint (because it is solved, or can't be), so that it isn't searched again.
+   */
+  private static final FlowMove NO_HINT = new FlowMove(null, null, null);
+  /**
+   * The request there is before the first one, for no board.
+   */
+  private static final Request NO_REQUEST = new Request(0, null, new AtomicBoolean(true), 0);
+
+  /**
+   * How long {@link HintService#awaitHint(Level)} waits for each hint, in nanoseconds.
+   */
+  private final long budget;
+  /**
+   * The thread that hints are worked out on.
+   */
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable ->
+  {
+    Thread thread = new Thread(runnable, "Flow3D hints");
+    thread.setDaemon(true);
+    return thread;
+  });
+  /**
+   * The hints worked out so far, by the hash of their board, least recently used first.
+   */
+  private final Map<Long, FlowMove> cache = new LinkedHashMap<Long, FlowMove>(16, 0.75f, true)
+  {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, FlowMove> eldest)
+    {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * The last request, with its hint once it has been found. Replaced as a whole, so its board and its hint always go together.
+   */
+  private final AtomicReference<Request> current = new AtomicReference<>(NO_REQUEST);
+
+  /**
+   * Constructor for HintService
+   * <p>
+   * Creates a {@code HintService} that gives each hint {@link HintService#DEFAULT_BUDGET}.
+   */
+  public HintService()
+  {
+    this(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructor for HintService
+   * <p>
+   * Creates a {@code HintService} that gives each hint a time budget.
+   *
+   * @param budget How long {@link HintService#awaitHint(Level)} waits for each hint, in nanoseconds.
+   */
+  public HintService(long budget)
+  {
+    if (budget <= 0)
+      throw new IllegalArgumentException("A hint can't take " + budget + " nanoseconds.");
+    this.budget = budget;
+  }
+
+  /**
+   * Asks for a hint for a {@link Level}, stopping the last request if it is for a different board. Returns straight away; see {@link HintService#getHint(Level)}.
+   *
+   * @param level The {@link Level}. It is copied, so it can be changed while the hint is worked out.
+   */
+  public void request(Level level)
+  {
+    long hash = level.getHash();
+    Request last = current.get();
+    if (last.hash == hash && (last.move != null || !last.cancel.get()))
+      return;
+    last.cancel.set(true);
+
+    FlowMove cached;
+    synchronized (cache)
+    {
+      cached = cache.get(hash);
+    }
+    if (cached != null)
+    {
+      current.set(new Request(hash, cached, new AtomicBoolean(true), 0));
+      return;
+    }
+
+    Request pending = new Request(hash, null, new AtomicBoolean(), System.nanoTime() + budget);
+    current.set(pending);
+    Level copy = level.clone();
+    executor.execute(() ->
+    {
+      if (pending.cancel.get())
+        return;
+      FlowMove found = findHint(copy, pending.cancel);
+      if (found == null)
+        // Stopped because the board changed, so let the same board be asked for again.
+        return;
+      synchronized (cache)
+      {
+        cache.put(hash, found);
+      }
+      // Only replaces the request it was worked out for, so a hint never lands on a newer board.
+      if (current.compareAndSet(pending, new Request(hash, found, pending.cancel, pending.deadline)))
+        synchronized (current)
+        {
+          current.notifyAll();
+        }
+    });
+  }
+
+  /**
+   * Gets the hint for a {@link Level}, if it has been worked out. Never waits.
+   *
+   * @param level The {@link Level}.
+   * @return the next move of the hint, or {@code null} if the last request wasn't for this board, its hint isn't ready yet, or there is no hint to give.
+   */
+  public FlowMove getHint(Level level)
+  {
+    Request last = current.get();
+    if (last.hash != level.getHash() || last.move == NO_HINT)
+      return null;
+    return last.move;
+  }
+
+  /**
+   * Gets the hint for a {@link Level}, waiting for it until the time budget of its request is over.
+   *
+   * @param level The {@link Level}.
+   * @return the next move of the hint, or {@code null} if the last request wasn't for this board, its hint wasn't ready in time, or there is no hint to give.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public FlowMove awaitHint(Level level) throws InterruptedException
+  {
+    long hash = level.getHash();
+    synchronized (current)
+    {
+      Request last = current.get();
+      while (last.hash == hash && last.move == null && !last.cancel.get())
+      {
+        long left = last.deadline - System.nanoTime();
+        if (left <= 0)
+          break;
+        current.wait(left / 1_000_000L, (int) (left % 1_000_000L));
+        last = current.get();
+      }
+    }
+    return getHint(level);
+  }
+
+  /**
+   * Stops working on the last request if the board has changed since.
+   *
+   * @param level The {@link Level} as it is now.
+   */
+  public void cancelStale(Level level)
+  {
+    Request last = current.get();
+    if (last.hash != level.getHash())
+      last.cancel.set(true);
+  }
+
+  /**
+   * Stops the thread that hints are worked out on. No more hints can be asked for.
+   */
+  public void shutdown()
+  {
+    current.get().cancel.set(true);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Works out a hint for a {@link Level}.
+   *
+   * @param level  The {@link Level}. It is not changed.
+   * @param cancel A flag that stops the search when set.
+   * @return the next move, {@link HintService#NO_HINT} if there is none, or {@code null} if the search was stopped before it could tell.
+   */
+  private static FlowMove findHint(Level level, AtomicBoolean cancel)
+  {
+    SearchState state;
+    try
+    {
+      state = new SearchState(level, true);
+    }
+    catch (IllegalArgumentException e)
+    {
+      // A level without exactly two starts of each color can't be solved.
+      return NO_HINT;
+    }
+
+    // Carry on from the flows already drawn.
+    int first = state.depth;
+    Solver solver = new Solver(state);
+    solver.setCancel(cancel);
+    if (solver.search())
+    {
+      if (state.depth == first)
+        return NO_HINT;
+      return new FlowMove(state.colors[state.moveColors[first]], state.locationOf(state.movePreviousHeads[first]), state.locationOf(state.moveCells[first]));
+    }
+    if (solver.isCancelled())
+      return null;
+
+    // The drawn flows can't be finished, so find where one of them goes wrong.
+    SearchState fresh = new SearchState(level);
+    solver = new Solver(fresh);
+    solver.setCancel(cancel);
+    if (!solver.search())
+      return solver.isCancelled() ? null : NO_HINT;
+
+    FlowMove unfinished = null;
+    int[] solution = new int[fresh.volume];
+    for (int c = 0; c < fresh.colorCount; c++)
+    {
+      LinkedList<Point3I> drawn = level.getFlowPath(fresh.colors[c]);
+      if (drawn == null)
+        continue;
+      int length = flowOf(fresh, c, level.indexOf(drawn.getFirst().toPacked()), solution);
+      int same = 0;
+      for (Point3I location : drawn)
+      {
+        if (same == length || solution[same] != level.indexOf(location.toPacked()))
+          break;
+        same++;
+      }
+      if (same == 0 || same == length)
+        continue;
+      FlowMove move = new FlowMove(fresh.colors[c], fresh.locationOf(solution[same - 1]), fresh.locationOf(solution[same]));
+      if (same < drawn.size())
+        return move;
+      if (unfinished == null)
+        unfinished = move;
+    }
+    return unfinished == null ? NO_HINT : unfinished;
+  }
+
+  /**
+   * Gets the cells of the flow of a color in a solved state, starting from one of its ends.
+   *
+   * @param state The solved state.
+   * @param c     The color.
+   * @param from  The {@link PathType#START} to start from.
+   * @param flow  Where to put the index of each cell of the flow, in order. Must have room for the whole flow.
+   * @return how many cells the flow has.
+   */
+  private static int flowOf(SearchState state, int c, int from, int[] flow)
+  {
+    int length = 0;
+    flow[length++] = state.origins[c];
+    for (int i = 0; i < state.depth; i++)
+      if (state.moveColors[i] == c)
+        flow[length++] = state.moveCells[i];
+    if (flow[0] != from)
+      for (int i = 0, j = length - 1; i < j; i++, j--)
+      {
+        int swap = flow[i];
+        flow[i] = flow[j];
+        flow[j] = swap;
+      }
+    return length;
+  }
+
+  /**
+   * class Request
+   * <p>
+   * A request for a hint: the board it is for, and its hint once that has been found. Never changed, so that the hint can't be seen with the wrong board.
+   */
+  private static final class Request
+  {
+    /**
+     * The hash of the board. See {@link Level#getHash()}.
+     */
+    final long hash;
+    /**
+     * The hint, {@link HintService#NO_HINT} if there is none, or {@code null} if it hasn't been found yet.
+     */
+    final FlowMove move;
+    /**
+     * Set to stop working on the hint.
+     */
+    final AtomicBoolean cancel;
+    /**
+     * The {@link System#nanoTime()} that {@link HintService#awaitHint(Level)} stops waiting at.
+     */
+    final long deadline;
+
+    /**
+     * Creates a request for a hint.
+     *
+     * @param hash     The hash of the board.
+     * @param move     The hint, {@link HintService#NO_HINT} if there is none, or {@code null} if it hasn't been found yet.
+     * @param cancel   Set to stop working on the hint.
+     * @param deadline The {@link System#nanoTime()} that {@link HintService#awaitHint(Level)} stops waiting at.
+     */
+    Request(long hash, FlowMove move, AtomicBoolean cancel, long deadline)
+    {
+      this.hash = hash;
+      this.move = move;
+      this.cancel = cancel;
+      this.deadline = deadline;
+    }
+  }
+}
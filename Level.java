@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 /**
@@ -9,7 +9,7 @@ import java.util.LinkedList;
  * Uses a {@link Cube} object to store the information and set of {@link Path}s in the level.
  *
  * @author Peter Stratton
- * @version 1.6
+ * @version 2.2
  */
 public class Level
 {
@@ -18,9 +18,136 @@ public class Level
    */
   protected Cube levelCube;
 
+  /**
+   * The {@link PathType#START} cells of each {@link PathColor}, as indexes into the {@link Cube} in increasing order.
+   * <p>
+   * Indexed by {@link PathColor#getId()}. Only the first {@link Level#colorStartCounts} of each are used.
+   */
+  private int[][] colorStarts;
+  /**
+   * How many {@link PathType#START} cells of each {@link PathColor} there are.
+   */
+  private int[] colorStartCounts;
+  /**
+   * How many {@link PathType#PATH} cells of each {@link PathColor} there are.
+   */
+  private int[] colorPathCounts;
+  /**
+   * The flow of each {@link PathColor}, as indexes into the {@link Cube}, in order. See {@link Level#getFlowPath(PathColor)}.
+   * <p>
+   * An entry is {@code null} when a cell of that color has changed, and the flow has to be followed again.
+   */
+  private int[][] colorFlows;
+  /**
+   * How many cells of each entry in {@link Level#colorFlows} are used.
+   */
+  private int[] colorFlowLengths;
+  /**
+   * Whether the flow of each {@link PathColor} links both of its {@link PathType#START}s. Only correct for flows that are not {@code null} in {@link Level#colorFlows}.
+   */
+  private boolean[] colorConnected;
+  /**
+   * The colors whose flows have changed since they were last followed, so {@link Level#colorConnected} has to be checked again. Only the first {@link Level#changedColorCount} are used.
+   */
+  private int[] changedColors;
+  /**
+   * How many colors are in {@link Level#changedColors}.
+   */
+  private int changedColorCount;
+  /**
+   * Whether each color is in {@link Level#changedColors}.
+   */
+  private boolean[] colorChanged;
+  /**
+   * How many colors have at least one cell in the {@code Level}.
+   */
+  private int colorsInLevel;
+  /**
+   * How many colors are marked in {@link Level#colorConnected}.
+   */
+  private int connectedColors;
+  /**
+   * How many cells of the {@code Level} are not empty.
+   */
+  private int filledCells;
+
+  /**
+   * Every change made to the cells of the {@code Level}, oldest first, packed by {@link Level#packChange(int, int, int)}. Used by {@link Level#undo()} and {@link Level#redo()}.
+   * <p>
+   * Only the first {@link Level#historyEnd} are used, and the first {@link Level#historyPosition} are currently applied.
+   */
+  private long[] history;
+  /**
+   * How many changes in {@link Level#history} are currently applied.
+   */
+  private int historyPosition;
+  /**
+   * How many changes in {@link Level#history} there are, including ones that have been undone and can be redone.
+   */
+  private int historyEnd;
+  /**
+   * The positions in {@link Level#history} that {@link Level#checkpoint()} was called at, in increasing order. Only the first {@link Level#checkpointCount} are used.
+   */
+  private int[] checkpoints;
+  /**
+   * How many entries of {@link Level#checkpoints} are used.
+   */
+  private int checkpointCount;
+
+  /**
+   * Whether {@link Level#checkWin()} should check its answer against a full scan of the {@code Level}. See {@link Level#setVerifyIncremental(boolean)}.
+   */
+  private static boolean verifyIncremental = Driver.DEBUG;
+
+  /**
+   * A flow with no cells in it.
+   */
+  private static final int[] NO_FLOW = new int[0];
+
   private Level(int size)
   {
-    levelCube = new Cube(size);
+    this(new Cube(size));
+  }
+
+  /**
+   * Constructor for Level
+   * <p>
+   * Creates a {@code Level} that plays on an existing {@link Cube}, such as a {@link MappedCube} that was saved earlier, building the flow index from the cells already in it
+   * and linking each cell to the one before it in its flow (see {@link Cube#previousOf(int)}), so that the same paths always give the same hash.
+   * <p>
+   * Both of these read every cell that isn't empty, so a {@link MappedCube} is read through once when a {@code Level} is made to play on it. Only looking at cells of the {@link MappedCube} itself reads them lazily.
+   * <p>
+   * The {@link Cube} is not copied, so changes to the {@code Level} are made to it.
+   *
+   * @param cube The {@link Cube} to play on.
+   */
+  public Level(Cube cube)
+  {
+    levelCube = cube;
+    colorStarts = new int[0][];
+    colorStartCounts = new int[0];
+    colorPathCounts = new int[0];
+    colorFlows = new int[0][];
+    colorFlowLengths = new int[0];
+    colorConnected = new boolean[0];
+    changedColors = new int[0];
+    colorChanged = new boolean[0];
+    ensureColors(PathColor.NAMED_COUNT);
+    history = new long[16];
+    checkpoints = new int[8];
+
+    cube.forEachCell((index, cell) -> {
+      if (Cube.colorIndexOf(cell) < 0)
+        throw new IllegalArgumentException("The cell at " + toLocation(index) + " has no color!");
+      addToIndex(index, cell);
+      return true;
+    });
+
+    // A Cube that wasn't made by a Level may not link each cell to the one before it in its flow, and the links are part of the hash.
+    cube.forEachCell((index, cell) -> {
+      applyCell(index, Cube.withPrevious(cell, findPrevious(index, Cube.colorIndexOf(cell))));
+      return true;
+    });
   }
 
   /**
@@ -39,8 +166,9 @@ public class Level
 
     if (startPositionCount % 2 != 0)
       throw new IllegalArgumentException("There must be an even number of end points, so that each start can be matched to an end point!");
-    if (startPositionCount / 2 > PathColor.COUNT)
+    if (startPositionCount / 2 > PathColor.MAX_COUNT)
       throw new IllegalArgumentException("There are too many start positions!");
+    ensureColors(startPositionCount / 2);
     for (int i = 0; i < startPositionCount; i++)
     {
       Point3I pos = startPositionPairs[i];
@@ -51,8 +179,9 @@ public class Level
 
           throw new IllegalArgumentException("Two or more start positions are in the same place!");
         else
-          levelCube.addStart(pos, PathColor.get(i / 2));
+          setCell(pos, Cube.encode(PathType.START, PathColor.get(i / 2), null));
     }
+    clearHistory();
   }
 
   /**
@@ -126,6 +255,18 @@ public class Level
     return levelCube.size();
   }
 
+  /**
+   * Gets the Zobrist hash of the {@code Level}'s cells, which is kept up to date on every change. See {@link Cube#getHash()}.
+   * <p>
+   * Two {@code Level}s with the same paths drawn the same way have the same hash. For a hash that is also the same for {@code Level}s that are turned or have their colors swapped, see {@link CanonicalForm}.
+   *
+   * @return the hash of the cells.
+   */
+  public long getHash()
+  {
+    return levelCube.getHash();
+  }
+
   /**
    * Gets the {@link Path} at the specified location in the {@code Level}.
    *
@@ -156,6 +297,17 @@ public class Level
     return null;
   }
 
+  /**
+   * Gets the {@link Path} at the specified location in the {@code Level}.
+   *
+   * @param packedLocation The position in the {@code Level} of the {@link Path} to get, packed by {@link Point3I#pack(int, int, int)}.
+   * @return the {@link Path} at the specified location.
+   */
+  public Path getPath(long packedLocation)
+  {
+    return getPath(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
   /**
    * Checks to see if a specific point is overwritable or not.
    * <p>
@@ -191,6 +343,17 @@ public class Level
     return false;
   }
 
+  /**
+   * Checks to see if a specific point is overwritable or not. See {@link Level#isDrawable(int, int, int)}.
+   *
+   * @param packedLocation position in the {@code Level} of the {@link Path} to check, packed by {@link Point3I#pack(int, int, int)}.
+   * @return whether the position is overwritable or not.
+   */
+  public boolean isDrawable(long packedLocation)
+  {
+    return isDrawable(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
   /**
    * Checks to see if a position is a valid location within the {@code Level}. (Within it's indexes.)
    * <p>
@@ -220,6 +383,17 @@ public class Level
     return validLocation(location.getX(), location.getY(), location.getZ());
   }
 
+  /**
+   * Checks to see if a position is a valid location within the {@code Level}. See {@link Level#validLocation(int, int, int)}.
+   *
+   * @param packedLocation position in the {@code Level} to check, packed by {@link Point3I#pack(int, int, int)}.
+   * @return whether the position is within the {@code Level} or not.
+   */
+  public boolean validLocation(long packedLocation)
+  {
+    return validLocation(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
   /**
    * Sets the given location in the {@code Level} to the passed {@link Path}.
    *
@@ -228,7 +402,7 @@ public class Level
    */
   public void setPath(Point3I location, Path path)
   {
-    levelCube.setPath(path, location);
+    setCell(location, Cube.encode(path));
   }
 
   /**
@@ -239,7 +413,7 @@ public class Level
    */
   public void setPath(Point3I location, PathColor color)
   {
-    levelCube.setPath(new Path(PathType.PATH, color), location);
+    setCell(location, Cube.encode(PathType.PATH, color, null));
   }
 
   /**
@@ -251,7 +425,19 @@ public class Level
    */
   public void setPath(Point3I location, PathColor color, PathDirection direction)
   {
-    levelCube.setPath(new Path(PathType.PATH, color, direction), location);
+    setCell(location, Cube.encode(PathType.PATH, color, direction));
+  }
+
+  /**
+   * Sets the given location in the {@code Level} to the specified {@link Path}.
+   *
+   * @param packedLocation The position in the {@code Level} to put the {@link Path}, packed by {@link Point3I#pack(int, int, int)}.
+   * @param color          The color ({@link PathColor}) of the {@link Path}.
+   * @param direction      The direction ({@link PathDirection}) of the new {@link Path}.
+   */
+  public void setPath(long packedLocation, PathColor color, PathDirection direction)
+  {
+    setCell(indexOf(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation)), Cube.encode(PathType.PATH, color, direction));
   }
 
   /**
@@ -263,7 +449,7 @@ public class Level
    */
   public void deletePath(int x, int y, int z)
   {
-    levelCube.setPath(null, x, y, z);
+    setCell(indexOf(x, y, z), Cube.EMPTY);
   }
 
   /**
@@ -273,97 +459,283 @@ public class Level
    */
   public void deletePath(Point3I location)
   {
-    levelCube.setPath(null, location);
+    setCell(location, Cube.EMPTY);
+  }
+
+  /**
+   * Deletes a {@link Path} at a specified point.
+   *
+   * @param packedLocation The location of the {@link Path} to be deleted, packed by {@link Point3I#pack(int, int, int)}.
+   */
+  public void deletePath(long packedLocation)
+  {
+    setCell(indexOf(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation)), Cube.EMPTY);
+  }
+
+  /**
+   * Changes the flow direction of the {@link Path} at a specified point, if there is one.
+   * <p>
+   * {@link Path}s can't be changed, so this replaces the {@link Path} with one of the same type and color, and the new direction.
+   *
+   * @param location  The location of the {@link Path} to change.
+   * @param direction The new flow direction ({@link PathDirection}) of the {@link Path}. May be {@code null}.
+   */
+  public void setDirection(Point3I location, PathDirection direction)
+  {
+    if (location != null && validLocation(location))
+    {
+      int index = indexOf(location.getX(), location.getY(), location.getZ());
+      int cell = levelCube.getCell(index);
+      if (cell != Cube.EMPTY)
+        setCell(index, Cube.withDirection(cell, direction));
+    }
+  }
+
+  /**
+   * Draws a whole flow at once: fills each cell of it with a {@link PathType#PATH} of the color of its first cell, and points each cell at the next.
+   * <p>
+   * The cells of the flow that are {@link PathType#START}s are kept. This is how solutions are put into a {@code Level} (see {@link Solver}).
+   *
+   * @param flow   The indexes of the cells of the flow, in order (see {@link Level#indexOf(int, int, int)}). The first must be a {@link PathType#START}.
+   * @param length How many entries of {@code flow} are used.
+   */
+  public void setFlow(int[] flow, int length)
+  {
+    int first = levelCube.getCell(flow[0]);
+    if (!Cube.isStart(first))
+      throw new IllegalArgumentException("A flow has to begin at a start!");
+    PathColor color = Cube.colorOf(first);
+    for (int i = 1; i < length; i++)
+      if (!Cube.isStart(levelCube.getCell(flow[i])))
+        setCell(flow[i], Cube.encode(PathType.PATH, color, null));
+    for (int i = 0; i < length; i++)
+    {
+      PathDirection direction = null;
+      if (i + 1 < length)
+      {
+        for (PathDirection d : PathDirection.DIRECTIONS)
+          if (neighbourIndex(flow[i], d) == flow[i + 1])
+            direction = d;
+        if (direction == null)
+          throw new IllegalArgumentException("Cells " + flow[i] + " and " + flow[i + 1] + " of the flow are not next to each other!");
+      }
+      setCell(flow[i], Cube.withDirection(levelCube.getCell(flow[i]), direction));
+    }
   }
 
   /**
    * Gets the flow path of a given {@link PathColor} through the {@code Level}.
+   * <p>
+   * The flow starts at the {@link PathType#START} of that color that has a direction, and follows the directions for as long as they lead to cells of the same color.
+   * Flows are kept in an index that is updated as cells change, so this only takes as long as the flow is long.
    *
    * @param color The {@link PathColor} of the flow to get the flow of.
    * @return a {@link LinkedList} of {@link Point3I}s that show where a color flows from and to. Will be {@code null} if there is no flow to be found.
    */
   public LinkedList<Point3I> getFlowPath(PathColor color)
   {
-    int size = size();
-    Point3I found = null;
-    for (int z = 0; z < size && found == null; z++)
-      for (int y = 0; y < size && found == null; y++)
-        for (int x = 0; x < size && found == null; x++)
-        {
-          Path pth = getPath(x, y, z);
-          if (pth != null && pth.getColor() == color && (pth.getType() == PathType.START && pth.getDirection() != null))
-            found = new Point3I(x, y, z);
-        }
-    if (found == null)
+    int c = colorIndex(color);
+    int[] flow = getFlow(c);
+    int length = colorFlowLengths[c];
+    if (length == 0)
       return null;
-    /*while (getPath(found).getType() != PathType.START) // TODO THIS CRASHES ON EASY ((V< to V> to ^>) then (^< to ^>))
-    {
-      found = getPreviousInFlow(found);
-    }*/
 
-    LinkedList<Point3I> flow = new LinkedList<>();
-    flow.add(found);
-    while (found != null && getPath(found) != null && getPath(found).getDirection() != null)
-    {
-      found = getPath(found).getDirection().move(found);
-      flow.add(found);
-    }
-    return flow;
+    LinkedList<Point3I> flowPath = new LinkedList<>();
+    for (int i = 0; i < length; i++)
+      flowPath.add(toLocation(flow[i]));
+    return flowPath;
+  }
+
+  /**
+   * Gets the locations of the {@link PathType#START}s of a given {@link PathColor}.
+   *
+   * @param color The {@link PathColor} of the {@link PathType#START}s to get.
+   * @return an array of the locations of the {@link PathType#START}s of that color. Normally both ends of the flow.
+   */
+  public Point3I[] getFlowEnds(PathColor color)
+  {
+    int c = colorIndex(color);
+    Point3I[] ends = new Point3I[colorStartCounts[c]];
+    for (int i = 0; i < ends.length; i++)
+      ends[i] = toLocation(colorStarts[c][i]);
+    return ends;
+  }
+
+  /**
+   * Gets the last cell of the flow of a given {@link PathColor}. This is where the flow would be continued from.
+   *
+   * @param color The {@link PathColor} of the flow.
+   * @return the location of the last cell of the flow, or {@code null} if there is no flow to be found. See {@link Level#getFlowPath(PathColor)}.
+   */
+  public Point3I getFlowHead(PathColor color)
+  {
+    int c = colorIndex(color);
+    int[] flow = getFlow(c);
+    if (colorFlowLengths[c] == 0)
+      return null;
+    return toLocation(flow[colorFlowLengths[c] - 1]);
   }
 
   /**
    * Gets the location of the previous {@link Path} in a flow, if applicable.
+   * <p>
+   * This is the neighbour whose flow direction points to the location. It is stored in the cell, so nothing is searched.
    *
    * @param location The location of the {@link Path} to find the previous one of.
    * @return a {@link Point3I} of the location of the {@link Path} in the flow before this one. Will be {@code null} if there is none before it, or this isn't a valid {@link Path}.
    */
   public Point3I getPreviousInFlow(Point3I location)
   {
-    if (location != null)
-      if (getPath(location).getType() != PathType.START)
-      {
-        for (int i = 0; i < 6; i++)
-          if (validLocation(location.add(PathDirection.DIRECTIONS[i].move(new Point3I()))))
-          {
-            Path pth = getPath(location.add(PathDirection.DIRECTIONS[i].move(new Point3I())));
-            if (pth != null && pth.getDirection() == PathDirection.DIRECTIONS[i].reverse())
-            {
-              return location.add(PathDirection.DIRECTIONS[i].move(new Point3I()));
-            }
-          }
-      }
+    if (location != null && validLocation(location))
+    {
+      int previous = getPreviousIndex(indexOf(location.getX(), location.getY(), location.getZ()));
+      if (previous >= 0)
+        return toLocation(previous);
+    }
+    return null;
+  }
+
+  /**
+   * Gets the location of the next {@link Path} in a flow, if applicable.
+   *
+   * @param location The location of the {@link Path} to find the next one of.
+   * @return a {@link Point3I} of the location of the {@link Path} in the flow after this one. Will be {@code null} if there is none after it, or this isn't a valid {@link Path}.
+   */
+  public Point3I getNextInFlow(Point3I location)
+  {
+    if (location != null && validLocation(location))
+    {
+      int next = getNextIndex(indexOf(location.getX(), location.getY(), location.getZ()));
+      if (next >= 0)
+        return toLocation(next);
+    }
     return null;
   }
 
+  /**
+   * Gets the index of the previous {@link Path} in a flow, without creating any objects. See {@link Level#getPreviousInFlow(Point3I)}.
+   *
+   * @param index The index of the {@link Path} to find the previous one of. See {@link Level#indexOf(int, int, int)}.
+   * @return the index of the {@link Path} in the flow before this one, or {@code -1} if there is none, or this is a {@link PathType#START}.
+   */
+  public int getPreviousIndex(int index)
+  {
+    int cell = levelCube.getCell(index);
+    PathDirection previous = Cube.previousOf(cell);
+    if (previous == null || Cube.isStart(cell))
+      return -1;
+    return neighbourIndex(index, previous);
+  }
+
+  /**
+   * Gets the index of the next {@link Path} in a flow, without creating any objects. See {@link Level#getNextInFlow(Point3I)}.
+   *
+   * @param index The index of the {@link Path} to find the next one of. See {@link Level#indexOf(int, int, int)}.
+   * @return the index of the {@link Path} the flow direction of this one points to, if it is of the same color, or {@code -1} otherwise.
+   */
+  public int getNextIndex(int index)
+  {
+    int cell = levelCube.getCell(index);
+    PathDirection next = Cube.directionOf(cell);
+    if (next == null)
+      return -1;
+    int nextIndex = neighbourIndex(index, next);
+    if (nextIndex < 0 || Cube.colorIndexOf(levelCube.getCell(nextIndex)) != Cube.colorIndexOf(cell))
+      return -1;
+    return nextIndex;
+  }
+
   /**
    * Checks to see if this {@code Level} is complete. Makes sure each color has been linked
    * and if every location has been filled.
+   * <p>
+   * This doesn't scan the {@code Level}; it reads counters that are kept up to date as cells change. Only flows that have changed since the last check are followed again, and only once every cell is filled.
    *
    * @return whether this {@code Level} has been completed.
    */
   public boolean checkWin()
   {
-    // Make sure every cell is filled.
-    ArrayList<PathColor> colorsInLevel = new ArrayList<PathColor>(PathColor.COUNT);
-    for (int z = 0; z < size(); z++)
-      for (int y = 0; y < size(); y++)
-        for (int x = 0; x < size(); x++)
-          if (getPath(x, y, z) == null)
-            return false;
-          else
-            if (!colorsInLevel.contains(getPath(x, y, z).getColor()))
-              colorsInLevel.add(getPath(x, y, z).getColor());
-
-    // Make sure every flow is complete.
-    for (PathColor color : colorsInLevel)
+    boolean won = filledCells == levelCube.volume();
+    if (won)
     {
-      LinkedList<Point3I> flow = getFlowPath(color);
-      if (getPath(flow.getFirst()).getType() != PathType.START && getPath(flow.getFirst()).getType() != PathType.START)
-        return false;
+      while (changedColorCount > 0)
+      {
+        int c = changedColors[--changedColorCount];
+        colorChanged[c] = false;
+        getFlow(c);
+      }
+      won = connectedColors == colorsInLevel;
     }
+
+    if (verifyIncremental && won != checkWinByScan())
+      throw new IllegalStateException("The incremental win state (" + won + ") does not match a full scan of the level!");
+    return won;
+  }
+
+  /**
+   * Checks to see if this {@code Level} is complete the slow way, by scanning every cell and following every flow without the flow index.
+   * <p>
+   * Used to check {@link Level#checkWin()} when {@link Level#setVerifyIncremental(boolean)} is on.
+   *
+   * @return whether this {@code Level} has been completed.
+   */
+  private boolean checkWinByScan()
+  {
+    // Make sure every cell is filled, and find where each flow begins.
+    int volume = levelCube.volume();
+    int[] filled = new int[1];
+    int[] flowStarts = new int[colorStartCounts.length];
+    Arrays.fill(flowStarts, -1);
+    boolean[] colorsFound = new boolean[colorStartCounts.length];
+    levelCube.forEachCell((index, cell) -> {
+      int c = Cube.colorIndexOf(cell);
+      filled[0]++;
+      colorsFound[c] = true;
+      if (Cube.isStart(cell) && Cube.directionOf(cell) != null && (flowStarts[c] < 0 || index < flowStarts[c]))
+        flowStarts[c] = index;
+      return true;
+    });
+    if (filled[0] != filledCells)
+      throw new IllegalStateException(filled[0] + " cells are filled, but the level counted " + filledCells + "!");
+    if (filled[0] != volume)
+      return false;
+
+    // Make sure every flow is complete.
+    for (int c = 0; c < colorsFound.length; c++)
+      if (colorsFound[c])
+      {
+        if (flowStarts[c] < 0)
+          return false;
+        Point3I found = toLocation(flowStarts[c]);
+        Point3I first = found;
+        Path path = getPath(found);
+        for (int length = 1; path.getDirection() != null && length <= volume; length++)
+        {
+          Point3I next = path.getDirection().move(found);
+          Path nextPath = getPath(next);
+          if (nextPath == null || nextPath.getColor() != path.getColor() || next.equals(first))
+            break;
+          found = next;
+          path = nextPath;
+        }
+        if (found.equals(first) || path.getType() != PathType.START)
+          return false;
+      }
     return true;
   }
 
+  /**
+   * Turns on or off checking {@link Level#checkWin()} against a full scan of the {@code Level}, which throws an {@link IllegalStateException} if they disagree.
+   * <p>
+   * This is slow, and meant for debugging. It defaults to {@link Driver#DEBUG}.
+   *
+   * @param verify Whether to check the incremental win state.
+   */
+  public static void setVerifyIncremental(boolean verify)
+  {
+    verifyIncremental = verify;
+  }
+
   /**
    * Clears this {@code Level} of all non-{@link PathType#START} {@link Path}s of the given {@link PathColor}.
    *
@@ -371,17 +743,97 @@ public class Level
    */
   public void clearColor(PathColor color)
   {
-    for (int z = 0; z < size(); z++)
-      for (int y = 0; y < size(); y++)
-        for (int x = 0; x < size(); x++)
-        {
-          Path p = levelCube.get(x, y, z);
-          if (p != null && p.getColor() == color)
-            if (p.getType() != PathType.START)
-              levelCube.setPath(null, x, y, z);
-            else
-              p.setDirection(null);
-        }
+    int c = colorIndex(color);
+
+    // Most of the time every path of this color is on its flow.
+    int[] flow = getFlow(c);
+    int length = colorFlowLengths[c];
+    for (int i = 0; i < length; i++)
+      if (!Cube.isStart(levelCube.getCell(flow[i])))
+        setCell(flow[i], Cube.EMPTY);
+
+    // Anything left over was cut off of the flow, so look for it.
+    if (colorPathCounts[c] > 0)
+      levelCube.forEachCell((index, cell) -> {
+        if (Cube.colorIndexOf(cell) == c && !Cube.isStart(cell))
+          setCell(index, Cube.EMPTY);
+        return colorPathCounts[c] > 0;
+      });
+
+    for (int i = colorStartCounts[c] - 1; i >= 0; i--)
+    {
+      int start = colorStarts[c][i];
+      setCell(start, Cube.withDirection(levelCube.getCell(start), null));
+    }
+  }
+
+  /**
+   * Marks the current state of the {@code Level} as a point that {@link Level#undo()} and {@link Level#redo()} stop at.
+   */
+  public void checkpoint()
+  {
+    if (historyPosition != historyEnd || (checkpointCount > 0 && checkpoints[checkpointCount - 1] == historyPosition))
+      return;
+    if (checkpointCount == checkpoints.length)
+      checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+    checkpoints[checkpointCount++] = historyPosition;
+  }
+
+  /**
+   * Undoes every change since the last {@link Level#checkpoint()}, or if there are none, every change between the last two checkpoints.
+   * <p>
+   * Only the changed cells are restored, so this takes as long as there were changes.
+   *
+   * @return whether anything was undone.
+   */
+  public boolean undo()
+  {
+    if (historyPosition == 0)
+      return false;
+    int target = 0;
+    for (int i = checkpointCount - 1; i >= 0 && target == 0; i--)
+      if (checkpoints[i] < historyPosition)
+        target = checkpoints[i];
+
+    while (historyPosition > target)
+    {
+      long change = history[--historyPosition];
+      applyCell((int) (change >>> 32), (int) (change >>> 16) & 0xFFFF);
+    }
+    return true;
+  }
+
+  /**
+   * Redoes the changes up to the next {@link Level#checkpoint()}, after {@link Level#undo()} has been called.
+   * <p>
+   * Any change to the {@code Level} after an undo throws away everything that could have been redone.
+   *
+   * @return whether anything was redone.
+   */
+  public boolean redo()
+  {
+    if (historyPosition == historyEnd)
+      return false;
+    int target = historyEnd;
+    for (int i = 0; i < checkpointCount && target == historyEnd; i++)
+      if (checkpoints[i] > historyPosition)
+        target = checkpoints[i];
+
+    while (historyPosition < target)
+    {
+      long change = history[historyPosition++];
+      applyCell((int) (change >>> 32), (int) change & 0xFFFF);
+    }
+    return true;
+  }
+
+  /**
+   * Forgets every change and checkpoint, so that nothing can be undone or redone.
+   */
+  public void clearHistory()
+  {
+    historyPosition = historyEnd = 0;
+    checkpointCount = 0;
   }
 
   /**
@@ -392,30 +844,462 @@ public class Level
    */
   public void resetLvl(int i)
   {
-    for (int z = 0; z < levelCube.size(); z++)
-      for (int y = 0; y < levelCube.size(); y++)
-        for (int x = 0; x < levelCube.size(); x++)
-          levelCube.setPath(null, x, y, z);
+    levelCube.forEachCell((index, cell) -> {
+      setCell(index, Cube.EMPTY);
+      return true;
+    });
 
     if (i == 1)
-      levelCube = easy().levelCube;
+      copyFrom(easy());
     else
       if (i == 2)
-        levelCube = medium().levelCube;
+        copyFrom(medium());
       else
         if (i == 3)
-          levelCube = hard().levelCube;
+          copyFrom(hard());
+  }
+
+  /**
+   * Gets the index of a location in the {@link Cube}. See {@link Cube#indexOf(int, int, int)}.
+   * <p>
+   * Indexes are used by the methods of the {@code Level} that don't create any {@link Point3I}s.
+   *
+   * @param x The X location in the {@code Level}.
+   * @param y The Y location in the {@code Level}.
+   * @param z The Z location in the {@code Level}.
+   * @return the index of the location.
+   * @throws IndexOutOfBoundsException if the location is not within the {@code Level}.
+   */
+  public int indexOf(int x, int y, int z)
+  {
+    if (!validLocation(x, y, z))
+      throw new IndexOutOfBoundsException("(" + x + "," + y + "," + z + ") is outside of a Level of size " + size() + ".");
+    return levelCube.indexOf(x, y, z);
+  }
+
+  /**
+   * Gets the index of a location in the {@link Cube}. See {@link Level#indexOf(int, int, int)}.
+   *
+   * @param packedLocation The location, packed by {@link Point3I#pack(int, int, int)}.
+   * @return the index of the location.
+   * @throws IndexOutOfBoundsException if the location is not within the {@code Level}.
+   */
+  public int indexOf(long packedLocation)
+  {
+    return indexOf(Point3I.unpackX(packedLocation), Point3I.unpackY(packedLocation), Point3I.unpackZ(packedLocation));
+  }
+
+  /**
+   * Gets the location of a cell from its index in the {@link Cube}. See {@link Cube#indexOf(int, int, int)}.
+   *
+   * @param index The index of the cell.
+   * @return the location of the cell.
+   */
+  private Point3I toLocation(int index)
+  {
+    int size = size();
+    return new Point3I(index % size, (index / size) % size, index / (size * size));
+  }
+
+  /**
+   * Sets a location in the {@link Cube} to a packed cell, keeping the flow index up to date.
+   *
+   * @param location The location of the cell. Nothing is done if this is {@code null}.
+   * @param cell     The new packed cell. See {@link Cube#encode(Path)}.
+   */
+  private void setCell(Point3I location, int cell)
+  {
+    if (location != null)
+      setCell(indexOf(location.getX(), location.getY(), location.getZ()), cell);
+  }
+
+  /**
+   * Sets a cell in the {@link Cube} to a packed cell, keeping the flow index, history and links between cells up to date.
+   * <p>
+   * Every change to {@link Level#levelCube} must go through here.
+   *
+   * @param index The index of the cell.
+   * @param cell  The new packed cell. See {@link Cube#encode(Path)}.
+   */
+  private void setCell(int index, int cell)
+  {
+    int old = levelCube.getCell(index);
+    if (cell != Cube.EMPTY)
+      cell = Cube.withPrevious(cell, findPrevious(index, Cube.colorIndexOf(cell)));
+    if (old == cell)
+      return;
+    writeCell(index, cell);
+
+    // Whatever this cell stopped or started pointing to, or points to with a new color, has a new previous cell.
+    PathDirection oldNext = Cube.directionOf(old);
+    PathDirection newNext = Cube.directionOf(cell);
+    if (oldNext != newNext || (oldNext != null && Cube.colorIndexOf(old) != Cube.colorIndexOf(cell)))
+    {
+      if (oldNext != null)
+        relink(neighbourIndex(index, oldNext));
+      if (newNext != null)
+        relink(neighbourIndex(index, newNext));
+    }
+  }
+
+  /**
+   * Updates the previous direction of a cell (see {@link Cube#previousOf(int)}), after one of its neighbours has changed.
+   *
+   * @param index The index of the cell, or {@code -1} to do nothing.
+   */
+  private void relink(int index)
+  {
+    if (index < 0)
+      return;
+    int cell = levelCube.getCell(index);
+    if (cell != Cube.EMPTY)
+    {
+      int linked = Cube.withPrevious(cell, findPrevious(index, Cube.colorIndexOf(cell)));
+      if (linked != cell)
+        writeCell(index, linked);
+    }
+  }
+
+  /**
+   * Finds the neighbour of the same color whose flow direction points to a cell.
+   *
+   * @param index The index of the cell.
+   * @param color The color of the cell. See {@link Cube#colorIndexOf(int)}.
+   * @return the direction of that neighbour, or {@code null} if there is none. If there are more than one, the first in {@link PathDirection#DIRECTIONS}.
+   */
+  private PathDirection findPrevious(int index, int color)
+  {
+    for (PathDirection direction : PathDirection.DIRECTIONS)
+    {
+      int neighbour = neighbourIndex(index, direction);
+      if (neighbour < 0)
+        continue;
+      int cell = levelCube.getCell(neighbour);
+      if (Cube.directionOf(cell) == direction.reverse() && Cube.colorIndexOf(cell) == color)
+        return direction;
+    }
+    return null;
+  }
+
+  /**
+   * Gets the index of the neighbour of a cell in a given direction, without creating any objects.
+   *
+   * @param index     The index of the cell. See {@link Level#indexOf(int, int, int)}.
+   * @param direction The direction of the neighbour.
+   * @return the index of the neighbour, or {@code -1} if it would be outside of the {@code Level}.
+   */
+  public int neighbourIndex(int index, PathDirection direction)
+  {
+    int size = size();
+    return neighbourIndex(index % size, (index / size) % size, index / (size * size), direction);
+  }
+
+  /**
+   * Gets the index of the neighbour of a location in a given direction, without creating any objects.
+   *
+   * @param x         The X location in the {@code Level}.
+   * @param y         The Y location in the {@code Level}.
+   * @param z         The Z location in the {@code Level}.
+   * @param direction The direction of the neighbour.
+   * @return the index of the neighbour, or {@code -1} if it would be outside of the {@code Level}.
+   */
+  public int neighbourIndex(int x, int y, int z, PathDirection direction)
+  {
+    x += direction.getDX();
+    y += direction.getDY();
+    z += direction.getDZ();
+    return validLocation(x, y, z) ? levelCube.indexOf(x, y, z) : -1;
+  }
+
+  /**
+   * Shows each neighbour of a cell that is within the {@code Level} to a {@link NeighbourVisitor}, in the order of {@link PathDirection#DIRECTIONS}.
+   *
+   * @param index   The index of the cell. See {@link Level#indexOf(int, int, int)}.
+   * @param visitor What to show the neighbours to.
+   */
+  public void forEachNeighbour(int index, NeighbourVisitor visitor)
+  {
+    int size = size();
+    forEachNeighbour(index % size, (index / size) % size, index / (size * size), visitor);
+  }
+
+  /**
+   * Shows each neighbour of a location that is within the {@code Level} to a {@link NeighbourVisitor}, in the order of {@link PathDirection#DIRECTIONS}.
+   *
+   * @param x       The X location in the {@code Level}.
+   * @param y       The Y location in the {@code Level}.
+   * @param z       The Z location in the {@code Level}.
+   * @param visitor What to show the neighbours to.
+   */
+  public void forEachNeighbour(int x, int y, int z, NeighbourVisitor visitor)
+  {
+    for (PathDirection direction : PathDirection.DIRECTIONS)
+    {
+      int neighbour = neighbourIndex(x, y, z, direction);
+      if (neighbour >= 0)
+        visitor.visit(neighbour, direction);
+    }
+  }
+
+  /**
+   * Sets a cell in the {@link Cube} to a packed cell, and adds the change to the history.
+   *
+   * @param index The index of the cell.
+   * @param cell  The new packed cell, including its previous direction.
+   */
+  private void writeCell(int index, int cell)
+  {
+    int old = levelCube.getCell(index);
+
+    // A new change means what was undone can't be redone.
+    if (historyPosition < historyEnd)
+    {
+      historyEnd = historyPosition;
+      while (checkpointCount > 0 && checkpoints[checkpointCount - 1] > historyPosition)
+        checkpointCount--;
+    }
+    if (historyEnd == history.length)
+      history = Arrays.copyOf(history, historyEnd * 2);
+    history[historyEnd++] = packChange(index, old, cell);
+    historyPosition = historyEnd;
+
+    applyCell(index, cell);
+  }
+
+  /**
+   * Packs a change to a cell into one {@code long}, for {@link Level#history}.
+   *
+   * @param index The index of the cell.
+   * @param old   The packed cell before the change.
+   * @param cell  The packed cell after the change.
+   * @return the index in the upper 32 bits, then the old cell, then the new cell in the lowest 16 bits.
+   */
+  private static long packChange(int index, int old, int cell)
+  {
+    return ((long) index << 32) | ((old & 0xFFFFL) << 16) | (cell & 0xFFFFL);
+  }
+
+  /**
+   * Sets a cell in the {@link Cube} to a packed cell, keeping the flow index up to date, without adding it to the history.
+   *
+   * @param index The index of the cell.
+   * @param cell  The new packed cell. See {@link Cube#encode(Path)}.
+   */
+  private void applyCell(int index, int cell)
+  {
+    int old = levelCube.getCell(index);
+    if (old == cell)
+      return;
+    if (Cube.withPrevious(old, null) == Cube.withPrevious(cell, null))
+    {
+      // Only the link to the previous cell changed, which the index doesn't care about.
+      levelCube.setCell(index, cell);
+      return;
+    }
+    if (old != Cube.EMPTY)
+      removeFromIndex(index, old);
+    levelCube.setCell(index, cell);
+    if (cell != Cube.EMPTY)
+      addToIndex(index, cell);
+  }
+
+  /**
+   * Adds a cell that has just been set to the flow index.
+   *
+   * @param index The index of the cell.
+   * @param cell  The packed cell.
+   */
+  private void addToIndex(int index, int cell)
+  {
+    int c = Cube.colorIndexOf(cell);
+    ensureColors(c + 1);
+    flowChanged(c);
+    filledCells++;
+    if (colorStartCounts[c] + colorPathCounts[c] == 0)
+      colorsInLevel++;
+    if (!Cube.isStart(cell))
+    {
+      colorPathCounts[c]++;
+      return;
+    }
+
+    int count = colorStartCounts[c];
+    if (count == colorStarts[c].length)
+      colorStarts[c] = Arrays.copyOf(colorStarts[c], count * 2);
+    int i = count;
+    while (i > 0 && colorStarts[c][i - 1] > index)
+    {
+      colorStarts[c][i] = colorStarts[c][i - 1];
+      i--;
+    }
+    colorStarts[c][i] = index;
+    colorStartCounts[c]++;
+  }
+
+  /**
+   * Removes a cell that is about to be replaced from the flow index.
+   *
+   * @param index The index of the cell.
+   * @param cell  The packed cell being replaced.
+   */
+  private void removeFromIndex(int index, int cell)
+  {
+    int c = Cube.colorIndexOf(cell);
+    flowChanged(c);
+    filledCells--;
+    if (colorStartCounts[c] + colorPathCounts[c] == 1)
+      colorsInLevel--;
+    if (!Cube.isStart(cell))
+    {
+      colorPathCounts[c]--;
+      return;
+    }
+
+    int count = colorStartCounts[c];
+    int i = 0;
+    while (colorStarts[c][i] != index)
+      i++;
+    System.arraycopy(colorStarts[c], i + 1, colorStarts[c], i, count - i - 1);
+    colorStartCounts[c]--;
+  }
+
+  /**
+   * Gets the ID of a {@link PathColor}, making sure the per-color index has room for it.
+   *
+   * @param color The {@link PathColor}.
+   * @return the {@link PathColor#getId()} of the color.
+   */
+  private int colorIndex(PathColor color)
+  {
+    int c = color.getId();
+    ensureColors(c + 1);
+    return c;
+  }
+
+  /**
+   * Grows the per-color parts of the index so that they have room for at least the given number of colors.
+   * <p>
+   * They start with room for the {@link PathColor#NAMED_COUNT} named colors, and double from there, so a {@code Level} only pays for the colors it uses.
+   *
+   * @param count How many colors there needs to be room for.
+   */
+  private void ensureColors(int count)
+  {
+    int old = colorStartCounts.length;
+    if (count <= old)
+      return;
+    int length = Math.min(Math.max(count, old * 2), PathColor.MAX_COUNT);
+    colorStarts = Arrays.copyOf(colorStarts, length);
+    for (int c = old; c < length; c++)
+      colorStarts[c] = new int[2];
+    colorStartCounts = Arrays.copyOf(colorStartCounts, length);
+    colorPathCounts = Arrays.copyOf(colorPathCounts, length);
+    colorFlows = Arrays.copyOf(colorFlows, length);
+    Arrays.fill(colorFlows, old, length, NO_FLOW);
+    colorFlowLengths = Arrays.copyOf(colorFlowLengths, length);
+    colorConnected = Arrays.copyOf(colorConnected, length);
+    changedColors = Arrays.copyOf(changedColors, length);
+    colorChanged = Arrays.copyOf(colorChanged, length);
+  }
+
+  /**
+   * Marks the flow of a color as changed, so that it is followed again the next time it is needed.
+   *
+   * @param c The {@link PathColor#getId()} of the flow.
+   */
+  private void flowChanged(int c)
+  {
+    if (colorFlows[c] == null)
+      return;
+    colorFlows[c] = null;
+    if (colorConnected[c])
+    {
+      colorConnected[c] = false;
+      connectedColors--;
+    }
+    if (!colorChanged[c])
+    {
+      colorChanged[c] = true;
+      changedColors[changedColorCount++] = c;
+    }
+  }
+
+  /**
+   * Gets the flow of a color from the flow index, following it again if it has changed.
+   *
+   * @param c The {@link PathColor#getId()} of the flow.
+   * @return the indexes of the cells of the flow, in order. Only the first {@link Level#colorFlowLengths} are used.
+   */
+  private int[] getFlow(int c)
+  {
+    if (colorFlows[c] != null)
+      return colorFlows[c];
+
+    int[] flow = new int[colorStartCounts[c] + colorPathCounts[c]];
+    int length = 0;
+    int found = -1;
+    for (int i = 0; i < colorStartCounts[c] && found < 0; i++)
+      if (Cube.directionOf(levelCube.getCell(colorStarts[c][i])) != null)
+        found = colorStarts[c][i];
+
+    if (found >= 0)
+    {
+      flow[length++] = found;
+      int index = getNextIndex(found);
+      while (index >= 0 && index != found && length < flow.length)
+      {
+        flow[length++] = index;
+        index = getNextIndex(index);
+      }
+    }
+
+    colorFlows[c] = flow;
+    colorFlowLengths[c] = length;
+    if (length > 1 && Cube.isStart(levelCube.getCell(flow[length - 1])))
+    {
+      colorConnected[c] = true;
+      connectedColors++;
+    }
+    return flow;
+  }
+
+  /**
+   * Makes this {@code Level} a copy of another {@code Level}, including the flow index.
+   *
+   * @param other The {@code Level} to copy.
+   */
+  private void copyFrom(Level other)
+  {
+    levelCube = other.levelCube.clone();
+    colorStarts = new int[other.colorStarts.length][];
+    for (int c = 0; c < colorStarts.length; c++)
+      colorStarts[c] = other.colorStarts[c].clone();
+    colorStartCounts = other.colorStartCounts.clone();
+    colorPathCounts = other.colorPathCounts.clone();
+    // Flows are never changed once followed, so they can be shared.
+    colorFlows = other.colorFlows.clone();
+    colorFlowLengths = other.colorFlowLengths.clone();
+    colorConnected = other.colorConnected.clone();
+    changedColors = other.changedColors.clone();
+    changedColorCount = other.changedColorCount;
+    colorChanged = other.colorChanged.clone();
+    colorsInLevel = other.colorsInLevel;
+    connectedColors = other.connectedColors;
+    filledCells = other.filledCells;
+    clearHistory();
   }
 
   /**
    * Creates a clone of the this {@code Level} object.
+   * <p>
+   * The clone starts with no history to {@link Level#undo()}.
    *
    * @return The cloned object. See: {@link Object#clone()}
    */
   public Level clone()
   {
     Level clone = new Level(size());
-    clone.levelCube = levelCube.clone();
+    clone.copyFrom(this);
     return clone;
   }
 }
@@ -0,0 +1,337 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * class LevelGenerator
+ * <p>
+ * Makes new {@link Level}s of any size and number of colors, that always have a solution.
+ * <p>
+ * A level is made by drawing one path that fills the whole cube, cutting it into as many flows as there are colors, and keeping only the two ends of each flow as {@link PathType#START}s.
+ * The path it was cut from is a solution, though there may be others.
+ * <p>
+ * The path starts as a snake that goes back and forth along each row and layer, and is then scrambled by "backbite" moves:
+ * one end of the path is joined onto a random neighbour further along it, and the part of the path between them is turned around so that it is still one path.
+ * After enough moves the path looks nothing like the snake it started as.
+ * <p>
+ * Every level is made from a seed, so the same seed always makes the same level. {@link LevelGenerator#generate(long, int)} makes a batch of levels on every core at once;
+ * level {@code i} of a batch only depends on the seed of the batch and {@code i}, so a batch is the same however many threads make it.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public class LevelGenerator
+{
+  /**
+   * The fewest cells a flow may have, so that no flow is just its two ends.
+   */
+  public static final int MIN_FLOW_LENGTH = 3;
+  /**
+   * How many backbite moves are made for each cell of the cube.
+   */
+  private static final int MOVES_PER_CELL = 20;
+  /**
+   * How many levels a task of a batch makes itself, instead of splitting the batch up further.
+   */
+  private static final int BATCH_GRAIN = 4;
+
+  /**
+   * The side length of the levels.
+   */
+  private final int size;
+  /**
+   * How many colors the levels have.
+   */
+  private final int colorCount;
+  /**
+   * How many cells the levels have.
+   */
+  private final int volume;
+  /**
+   * The neighbours of each cell, at {@code cell * DIRECTION_COUNT + d}, in the order of {@link PathDirection#DIRECTIONS}. {@code -1} where there is none.
+   */
+  private final int[] neighbours;
+
+  /**
+   * Constructor for LevelGenerator
+   * <p>
+   * Creates a {@code LevelGenerator} for levels of a size and number of colors.
+   *
+   * @param size       The side length of the levels.
+   * @param colorCount How many colors the levels have.
+   * @throws IllegalArgumentException if there are too many colors for each to get {@link LevelGenerator#MIN_FLOW_LENGTH} cells, or more than {@link PathColor#MAX_COUNT}.
+   */
+  public LevelGenerator(int size, int colorCount)
+  {
+    if (size < 1)
+      throw new IllegalArgumentException("A level can't have a side length of " + size + ".");
+    if (colorCount < 1 || colorCount > PathColor.MAX_COUNT || colorCount * MIN_FLOW_LENGTH > size * size * size)
+      throw new IllegalArgumentException("A level of size " + size + " can't have " + colorCount + " colors!");
+    this.size = size;
+    this.colorCount = colorCount;
+    volume = size * size * size;
+
+    int directions = PathDirection.DIRECTIONS.length;
+    neighbours = new int[volume * directions];
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+          for (int d = 0; d < directions; d++)
+          {
+            PathDirection direction = PathDirection.DIRECTIONS[d];
+            int nx = x + direction.getDX(), ny = y + direction.getDY(), nz = z + direction.getDZ();
+            boolean inside = nx >= 0 && ny >= 0 && nz >= 0 && nx < size && ny < size && nz < size;
+            neighbours[indexOf(x, y, z) * directions + d] = inside ? indexOf(nx, ny, nz) : -1;
+          }
+  }
+
+  /**
+   * Makes a level.
+   *
+   * @param seed The seed to make it from. The same seed always makes the same level.
+   * @return the new {@link Level}, with only its {@link PathType#START}s drawn.
+   */
+  public Level generate(long seed)
+  {
+    SplittableRandom random = new SplittableRandom(seed);
+    int[] path = randomPath(random);
+
+    // Cut the path into flows, each at least MIN_FLOW_LENGTH long.
+    int spare = volume - colorCount * MIN_FLOW_LENGTH;
+    int[] cuts = new int[colorCount + 1];
+    for (int i = 1; i < colorCount; i++)
+      cuts[i] = random.nextInt(spare + 1);
+    cuts[colorCount] = spare;
+    Arrays.sort(cuts);
+
+    // Give the flows their colors in a random order, so the colors don't follow the path.
+    int[] order = new int[colorCount];
+    for (int i = 0; i < colorCount; i++)
+    {
+      int j = random.nextInt(i + 1);
+      order[i] = order[j];
+      order[j] = i;
+    }
+
+    Point3I[] starts = new Point3I[colorCount * 2];
+    for (int flow = 0; flow < colorCount; flow++)
+    {
+      int first = cuts[flow] + flow * MIN_FLOW_LENGTH;
+      int last = cuts[flow + 1] + (flow + 1) * MIN_FLOW_LENGTH - 1;
+      starts[order[flow] * 2] = locationOf(path[first]);
+      starts[order[flow] * 2 + 1] = locationOf(path[last]);
+    }
+    return new Level(size, starts);
+  }
+
+  /**
+   * Makes a batch of levels with every thread of the common {@link ForkJoinPool}.
+   *
+   * @param seed  The seed of the batch. The same seed always makes the same batch.
+   * @param count How many levels to make.
+   * @return the new {@link Level}s, in order.
+   */
+  public List<Level> generate(long seed, int count)
+  {
+    return generate(seed, count, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Makes a batch of levels with every thread of a given {@link ForkJoinPool}.
+   *
+   * @param seed  The seed of the batch. The same seed always makes the same batch.
+   * @param count How many levels to make.
+   * @param pool  The pool to make them in.
+   * @return the new {@link Level}s, in order.
+   */
+  public List<Level> generate(long seed, int count, ForkJoinPool pool)
+  {
+    if (count < 0)
+      throw new IllegalArgumentException("Can't make " + count + " levels!");
+    Level[] levels = new Level[count];
+    pool.invoke(new BatchTask(seed, levels, 0, count));
+    return Arrays.asList(levels);
+  }
+
+  /**
+   * Gets the seed of one level of a batch.
+   *
+   * @param seed  The seed of the batch.
+   * @param index Which level of the batch it is.
+   * @return the seed to make the level from with {@link LevelGenerator#generate(long)}.
+   */
+  public static long seedOf(long seed, int index)
+  {
+    return Zobrist.mix(seed + 0x9E3779B97F4A7C15L * (index + 1L));
+  }
+
+  /**
+   * Gets the side length of the levels.
+   *
+   * @return the size of the levels.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Gets how many colors the levels have.
+   *
+   * @return the number of colors.
+   */
+  public int getColorCount()
+  {
+    return colorCount;
+  }
+
+  /**
+   * Draws a random path through every cell of the cube.
+   *
+   * @param random Where to get random numbers from.
+   * @return the index of each cell of the path, in order.
+   */
+  private int[] randomPath(SplittableRandom random)
+  {
+    // Start with a snake along the rows, back and forth through each layer.
+    int[] path = new int[volume];
+    int length = 0;
+    for (int z = 0; z < size; z++)
+      for (int row = 0; row < size; row++)
+      {
+        int y = z % 2 == 0 ? row : size - 1 - row;
+        boolean forwards = (z * size + row) % 2 == 0;
+        for (int i = 0; i < size; i++)
+          path[length++] = indexOf(forwards ? i : size - 1 - i, y, z);
+      }
+    int[] positions = new int[volume];
+    for (int i = 0; i < volume; i++)
+      positions[path[i]] = i;
+
+    // Scramble it with backbite moves.
+    int directions = PathDirection.DIRECTIONS.length;
+    int moves = volume * MOVES_PER_CELL;
+    for (int m = 0; m < moves && volume > 2; m++)
+    {
+      boolean fromStart = random.nextBoolean();
+      int end = fromStart ? path[0] : path[volume - 1];
+      int neighbour = neighbours[end * directions + random.nextInt(directions)];
+      if (neighbour < 0)
+        continue;
+      int at = positions[neighbour];
+      if (fromStart)
+      {
+        if (at > 1)
+          reverse(path, positions, 0, at - 1);
+      }
+      else
+      {
+        if (at < volume - 2)
+          reverse(path, positions, at + 1, volume - 1);
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Turns around part of a path.
+   *
+   * @param path      The path.
+   * @param positions Where each cell is in the path. Kept up to date.
+   * @param from      The first position to turn around.
+   * @param to        The last position to turn around.
+   */
+  private static void reverse(int[] path, int[] positions, int from, int to)
+  {
+    for (; from < to; from++, to--)
+    {
+      int swap = path[from];
+      path[from] = path[to];
+      path[to] = swap;
+      positions[path[from]] = from;
+      positions[path[to]] = to;
+    }
+  }
+
+  /**
+   * Gets the index of a cell, in the same order as {@link Level#indexOf(int, int, int)}.
+   *
+   * @param x The X location of the cell.
+   * @param y The Y location of the cell.
+   * @param z The Z location of the cell.
+   * @return the index of the cell.
+   */
+  private int indexOf(int x, int y, int z)
+  {
+    return x + size * (y + size * z);
+  }
+
+  /**
+   * Gets the location of a cell.
+   *
+   * @param index The index of the cell.
+   * @return the location of the cell.
+   */
+  private Point3I locationOf(int index)
+  {
+    return new Point3I(index % size, index / size % size, index / (size * size));
+  }
+
+  /**
+   * class BatchTask
+   * <p>
+   * Makes a range of the levels of a batch, splitting it in half for other threads to steal while it is big.
+   */
+  private class BatchTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The seed of the batch.
+     */
+    private final long seed;
+    /**
+     * Where to put the levels of the batch.
+     */
+    private final Level[] levels;
+    /**
+     * The first level of the range.
+     */
+    private final int from;
+    /**
+     * One past the last level of the range.
+     */
+    private final int to;
+
+    /**
+     * Creates a task that makes a range of the levels of a batch.
+     *
+     * @param seed   The seed of the batch.
+     * @param levels Where to put the levels of the batch.
+     * @param from   The first level of the range.
+     * @param to     One past the last level of the range.
+     */
+    BatchTask(long seed, Level[] levels, int from, int to)
+    {
+      this.seed = seed;
+      this.levels = levels;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from <= BATCH_GRAIN)
+      {
+        for (int i = from; i < to; i++)
+          levels[i] = generate(seedOf(seed, i));
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new BatchTask(seed, levels, from, middle), new BatchTask(seed, levels, middle, to));
+    }
+  }
+}
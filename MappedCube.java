@@ -0,0 +1,337 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * class MappedCube
+ * <p>
+ * A {@link Cube} that keeps its packed cells in a memory-mapped file instead of on the heap, for puzzles too big to hold in memory.
+ * <p>
+ * The operating system pages the cells in as they are used, so opening a {@code MappedCube} doesn't read the file, and a board can be picked up again after a restart just by opening it.
+ * Playing on it is another matter: a {@link Level} made on a {@code MappedCube} (see {@link Level#Level(Cube)}) reads every cell that isn't empty once, to find its flows.
+ * Changes go to the file, but are only certain to be written once {@link MappedCube#flush()} or {@link MappedCube#close()} is called.
+ * Other processes can open the same file read-only to look at it.
+ * <p>
+ * The Zobrist hash (see {@link Cube#getHash()}) isn't kept in the file. It is worked out the first time it is asked for, and kept up to date from then on.
+ * <p>
+ * The file starts with a {@link MappedCube#HEADER_BYTES} byte header (a magic number, the format version and the size of the {@code Cube}), followed by one {@code short} per cell, in the order of {@link Cube#indexOf(int, int, int)}.
+ *
+ * @author Kevin Chen
+ * @version 1.2
+ */
+public class MappedCube extends Cube implements Closeable
+{
+  /**
+   * The first four bytes of every {@code MappedCube} file: "F3DC".
+   */
+  private static final int MAGIC = 0x46334443;
+  /**
+   * The version of the file format. Files of other versions can't be opened.
+   */
+  private static final int FORMAT_VERSION = 1;
+  /**
+   * How many bytes come before the cells in the file.
+   */
+  public static final int HEADER_BYTES = 16;
+  /**
+   * How many bits of a byte offset into the file pick the byte within its mapped segment. A single {@link MappedByteBuffer} can't be more than 2GB long.
+   */
+  private static final int SEGMENT_BITS = 30;
+  /**
+   * How many bytes are in each mapped segment of the file, except maybe the last.
+   */
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+  /**
+   * The file the cells are kept in.
+   */
+  private final File file;
+  /**
+   * The open channel to {@link MappedCube#file}.
+   */
+  private final FileChannel channel;
+  /**
+   * The mapped segments of the file, in order, each {@link MappedCube#SEGMENT_SIZE} long except maybe the last.
+   */
+  private final MappedByteBuffer[] segments;
+  /**
+   * Whether the file was opened read-only, in which case changing a cell throws an {@link UnsupportedOperationException}.
+   */
+  private final boolean readOnly;
+  /**
+   * The Zobrist hash of the cells, once {@link MappedCube#hashed} is set.
+   */
+  private long hash;
+  /**
+   * Whether {@link MappedCube#hash} has been worked out yet.
+   */
+  private boolean hashed;
+
+  /**
+   * Maps the cells of an open file. Only to be used by {@link MappedCube#create(File, int)} and {@link MappedCube#open(File, boolean)}.
+   *
+   * @param file       The file the cells are kept in.
+   * @param channel    The open channel to the file.
+   * @param sideLength The side length of the {@code Cube}.
+   * @param readOnly   Whether the channel was opened read-only.
+   * @throws IOException if the file can't be mapped.
+   */
+  private MappedCube(File file, FileChannel channel, int sideLength, boolean readOnly) throws IOException
+  {
+    super(sideLength, false);
+    this.file = file;
+    this.channel = channel;
+    this.readOnly = readOnly;
+
+    long length = fileLength(sideLength);
+    segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+    FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+    for (int i = 0; i < segments.length; i++)
+    {
+      long start = (long) i << SEGMENT_BITS;
+      segments[i] = channel.map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+    }
+  }
+
+  /**
+   * Creates a new, empty {@code MappedCube} in a file, replacing anything that was in the file.
+   *
+   * @param file       The file to keep the cells in.
+   * @param sideLength The side length of the {@code Cube} to create.
+   * @return the new {@code MappedCube}.
+   * @throws IOException if the file can't be created or mapped.
+   */
+  public static MappedCube create(File file, int sideLength) throws IOException
+  {
+    if (sideLength < 1 || (long) sideLength * sideLength * sideLength > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("A Cube can't have a side length of " + sideLength + ".");
+
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try
+    {
+      MappedCube cube = new MappedCube(file, channel, sideLength, false);
+      ByteBuffer header = cube.segments[0];
+      header.putInt(4, FORMAT_VERSION);
+      header.putInt(8, sideLength);
+      // The magic number goes in last, so a file that was never finished can't be opened.
+      header.putInt(0, MAGIC);
+      return cube;
+    }
+    catch (IOException | RuntimeException e)
+    {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a {@code MappedCube} that was made by {@link MappedCube#create(File, int)}, without reading its cells. Making a {@link Level} on it does read them, once.
+   *
+   * @param file     The file the cells are kept in.
+   * @param readOnly Whether to open the file read-only, so that it can be shared with other processes.
+   * @return the {@code MappedCube} kept in the file.
+   * @throws IOException if the file can't be read or mapped, or is not a {@code MappedCube} file.
+   */
+  public static MappedCube open(File file, boolean readOnly) throws IOException
+  {
+    FileChannel channel = readOnly ?
+        FileChannel.open(file.toPath(), StandardOpenOption.READ) :
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try
+    {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      int read = 0;
+      while (header.hasRemaining() && read >= 0)
+        read = channel.read(header, header.position());
+      if (header.hasRemaining() || header.getInt(0) != MAGIC)
+        throw new IOException(file + " is not a Cube file.");
+      if (header.getInt(4) != FORMAT_VERSION)
+        throw new IOException(file + " is version " + header.getInt(4) + " of the Cube file format, not " + FORMAT_VERSION + ".");
+      int sideLength = header.getInt(8);
+      if (sideLength < 1 || (long) sideLength * sideLength * sideLength > Integer.MAX_VALUE || channel.size() < fileLength(sideLength))
+        throw new IOException(file + " is not a whole Cube file.");
+      return new MappedCube(file, channel, sideLength, readOnly);
+    }
+    catch (IOException | RuntimeException e)
+    {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets how long the file of a {@code MappedCube} is.
+   *
+   * @param sideLength The side length of the {@code Cube}.
+   * @return the length of the file in bytes.
+   */
+  private static long fileLength(int sideLength)
+  {
+    return HEADER_BYTES + 2L * sideLength * sideLength * sideLength;
+  }
+
+  /**
+   * Gets the file the cells of this {@code MappedCube} are kept in.
+   *
+   * @return the file.
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Checks if this {@code MappedCube} was opened read-only.
+   *
+   * @return whether cells can't be changed.
+   */
+  public boolean isReadOnly()
+  {
+    return readOnly;
+  }
+
+  /**
+   * Gets the packed cell at the given index. See {@link Cube#indexOf(int, int, int)}.
+   *
+   * @param index The index of the cell.
+   * @return the packed cell, or {@link Cube#EMPTY}.
+   */
+  @Override
+  public int getCell(int index)
+  {
+    long offset = HEADER_BYTES + 2L * index;
+    return segments[(int) (offset >>> SEGMENT_BITS)].getShort((int) (offset & (SEGMENT_SIZE - 1))) & 0xFFFF;
+  }
+
+  /**
+   * Gets the packed cell at a location.
+   *
+   * @param x The X location in the {@code Cube}.
+   * @param y The Y location in the {@code Cube}.
+   * @param z The Z location in the {@code Cube}.
+   * @return the packed cell, or {@link Cube#EMPTY}.
+   */
+  @Override
+  public int getCell(int x, int y, int z)
+  {
+    return getCell(indexOf(x, y, z));
+  }
+
+  /**
+   * Sets the packed cell at the given index. See {@link Cube#indexOf(int, int, int)}.
+   *
+   * @param index The index of the cell.
+   * @param cell  The new packed cell, or {@link Cube#EMPTY}.
+   * @throws UnsupportedOperationException if this {@code MappedCube} was opened read-only.
+   */
+  @Override
+  public void setCell(int index, int cell)
+  {
+    if (readOnly)
+      throw new UnsupportedOperationException(file + " was opened read-only.");
+    if (hashed)
+      hash ^= Zobrist.key(index, getCell(index)) ^ Zobrist.key(index, cell);
+    long offset = HEADER_BYTES + 2L * index;
+    segments[(int) (offset >>> SEGMENT_BITS)].putShort((int) (offset & (SEGMENT_SIZE - 1)), (short) cell);
+  }
+
+  /**
+   * Gets the Zobrist hash of the cells. The first call reads every cell that isn't empty.
+   * <p>
+   * The hash of a read-only {@code MappedCube} doesn't see changes made by other processes after it was worked out.
+   *
+   * @return the hash of the cells.
+   */
+  @Override
+  public long getHash()
+  {
+    if (!hashed)
+    {
+      long[] sum = new long[1];
+      forEachCell((index, cell) -> {
+        sum[0] ^= Zobrist.key(index, cell);
+        return true;
+      });
+      hash = sum[0];
+      hashed = true;
+    }
+    return hash;
+  }
+
+  /**
+   * Shows every cell of the {@code Cube} that is not {@link Cube#EMPTY} to a {@link CellVisitor}, in the order of their index, until it returns {@code false}.
+   * <p>
+   * Runs of four empty cells are skipped over at once. The visitor may change the cells it is shown.
+   *
+   * @param visitor What to show the cells to.
+   * @return {@code false} if the visitor stopped early, otherwise {@code true}.
+   */
+  @Override
+  public boolean forEachCell(CellVisitor visitor)
+  {
+    int volume = volume();
+    int index = 0;
+    while (index < volume)
+    {
+      // The header is a multiple of 8 bytes long, so four cells starting at a multiple of 4 never cross a segment.
+      if ((index & 3) == 0 && index + 4 <= volume)
+      {
+        long offset = HEADER_BYTES + 2L * index;
+        if (segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & (SEGMENT_SIZE - 1))) == 0)
+        {
+          index += 4;
+          continue;
+        }
+      }
+      int cell = getCell(index);
+      if (cell != EMPTY && !visitor.visit(index, cell))
+        return false;
+      index++;
+    }
+    return true;
+  }
+
+  /**
+   * Makes sure every change to the cells has been written to the file.
+   */
+  public void flush()
+  {
+    if (!readOnly)
+      for (MappedByteBuffer segment : segments)
+        segment.force();
+  }
+
+  /**
+   * Flushes the cells to the file and closes it. The {@code MappedCube} shouldn't be used after it is closed.
+   *
+   * @throws IOException if the file can't be closed.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    flush();
+    channel.close();
+  }
+
+  /**
+   * Creates a clone of this {@code MappedCube} on the heap.
+   * <p>
+   * The clone is a plain {@link Cube}, so changing it doesn't change the file.
+   *
+   * @return The cloned object. See: {@link Object#clone()}
+   */
+  @Override
+  public Cube clone()
+  {
+    Cube clone = new Cube(size());
+    forEachCell((index, cell) -> {
+      clone.setCell(index, cell);
+      return true;
+    });
+    return clone;
+  }
+}
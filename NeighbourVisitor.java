@@ -0,0 +1,20 @@
+/**
+ * interface NeighbourVisitor
+ * <p>
+ * Something that is shown each neighbour of a cell in a {@link Level}, by {@link Level#forEachNeighbour(int, NeighbourVisitor)}.
+ * <p>
+ * Cells are given by their index (see {@link Level#indexOf(int, int, int)}), so that visiting them creates no objects.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public interface NeighbourVisitor
+{
+  /**
+   * Called for each neighbour of a cell that is within the {@link Level}.
+   *
+   * @param neighbour The index of the neighbouring cell.
+   * @param direction The direction from the cell to this neighbour.
+   */
+  void visit(int neighbour, PathDirection direction);
+}
@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * class ParallelSolver
+ * <p>
+ * Searches for solutions to a {@link Level} like a {@link Solver}, but with every thread of a {@link ForkJoinPool}.
+ * <p>
+ * The search starts as one task. Whenever a task sees that there is no work queued for idle threads to steal, it gives away the untried moves at the shallowest depth of its search (see {@link Solver#split()}) as new tasks.
+ * This keeps the tasks big, as they are split off near the root of the search, while keeping every thread busy.
+ * Once the wanted number of solutions has been found, every task is told to stop, and they stop soon after.
+ * This makes {@link ParallelSolver#countSolutions(Level, int)} quick to check that a {@link Level} has only one solution: it stops as soon as a second is found.
+ *
+ * @author Stanley S.
+ * @version 1.2
+ */
+public class ParallelSolver
+{
+  /**
+   * The {@link Level} being solved.
+   */
+  private final Level puzzle;
+  /**
+   * The pool the search runs in.
+   */
+  private final ForkJoinPool pool;
+  /**
+   * How many solutions to find before stopping.
+   */
+  private final int solutionLimit;
+  /**
+   * Where the tasks remember states with no solution. Shared by every task. May be {@code null}.
+   */
+  private TranspositionTable table;
+
+  /**
+   * The solutions found so far in the current search.
+   */
+  private ConcurrentLinkedQueue<Level> solutions;
+  /**
+   * How many solutions have been found so far in the current search, counting ones past {@link ParallelSolver#solutionLimit} that were thrown away.
+   */
+  private AtomicInteger found;
+  /**
+   * Set when the search should stop.
+   */
+  private AtomicBoolean stop;
+  /**
+   * How many nodes the finished tasks of the current search searched.
+   */
+  private AtomicLong nodes;
+
+  /**
+   * Constructor for ParallelSolver
+   * <p>
+   * Creates a {@code ParallelSolver} that finds one solution to a {@link Level}, using the common {@link ForkJoinPool}.
+   *
+   * @param puzzle The {@link Level} to solve. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   */
+  public ParallelSolver(Level puzzle)
+  {
+    this(puzzle, ForkJoinPool.commonPool(), 1);
+  }
+
+  /**
+   * Constructor for ParallelSolver
+   * <p>
+   * Creates a {@code ParallelSolver} that finds up to a number of solutions to a {@link Level}, using a given {@link ForkJoinPool}.
+   *
+   * @param puzzle        The {@link Level} to solve. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   * @param pool          The pool to search in.
+   * @param solutionLimit How many solutions to find before stopping. At least 1.
+   */
+  public ParallelSolver(Level puzzle, ForkJoinPool pool, int solutionLimit)
+  {
+    if (solutionLimit < 1)
+      throw new IllegalArgumentException("At least one solution has to be looked for!");
+    this.puzzle = puzzle;
+    this.pool = pool;
+    this.solutionLimit = solutionLimit;
+  }
+
+  /**
+   * Sets where every task of the search remembers the states that have no solution. See {@link Solver#setTranspositionTable(TranspositionTable)}.
+   *
+   * @param table The table to share between the tasks, or {@code null} for none.
+   */
+  public void setTranspositionTable(TranspositionTable table)
+  {
+    this.table = table;
+  }
+
+  /**
+   * Counts the solutions of a {@link Level}, up to a limit, using the common {@link ForkJoinPool}.
+   * <p>
+   * To check that a {@link Level} has exactly one solution, use a limit of 2 and {@link SolutionCount#isUnique()}.
+   *
+   * @param puzzle The {@link Level} to count the solutions of. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   * @param limit  How many solutions to stop after. At least 1.
+   * @return the {@link SolutionCount}, with the solutions that were found.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public static SolutionCount countSolutions(Level puzzle, int limit)
+  {
+    return countSolutions(puzzle, limit, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Counts the solutions of a {@link Level}, up to a limit, using a given {@link ForkJoinPool}.
+   *
+   * @param puzzle The {@link Level} to count the solutions of. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   * @param limit  How many solutions to stop after. At least 1.
+   * @param pool   The pool to search in.
+   * @return the {@link SolutionCount}, with the solutions that were found.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public static SolutionCount countSolutions(Level puzzle, int limit, ForkJoinPool pool)
+  {
+    return new SolutionCount(limit, new ParallelSolver(puzzle, pool, limit).solve());
+  }
+
+  /**
+   * Searches for solutions, until {@link ParallelSolver#solutionLimit} of them have been found or every move has been tried.
+   *
+   * @return the {@link SolverResult}, with the solutions that were found. Its nodes are added up over every thread.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public synchronized SolverResult solve()
+  {
+    SearchState root = new SearchState(puzzle);
+    solutions = new ConcurrentLinkedQueue<>();
+    found = new AtomicInteger();
+    stop = new AtomicBoolean();
+    nodes = new AtomicLong();
+
+    long start = System.nanoTime();
+    pool.invoke(new SearchTask(root));
+    long nanos = System.nanoTime() - start;
+
+    List<Level> result = new ArrayList<>(solutions);
+    return new SolverResult(result.isEmpty() ? SolverStatus.UNSOLVABLE : SolverStatus.SOLVED, result, nodes.get(), nanos);
+  }
+
+  /**
+   * Keeps a solution that was found, and stops the search if it was the last one wanted.
+   *
+   * @param state The {@link SearchState}, at a solution.
+   */
+  private void foundSolution(SearchState state)
+  {
+    int count = found.incrementAndGet();
+    if (count <= solutionLimit)
+      solutions.add(state.toLevel());
+    if (count >= solutionLimit)
+      stop.set(true);
+  }
+
+  /**
+   * class SearchTask
+   * <p>
+   * Searches everything below one {@link SearchState}, giving some of it away to new tasks when other threads run out of work.
+   */
+  private class SearchTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The state to search from.
+     */
+    private final SearchState state;
+
+    /**
+     * Creates a task that searches everything below a {@link SearchState}.
+     *
+     * @param state The state to search from.
+     */
+    SearchTask(SearchState state)
+    {
+      this.state = state;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (stop.get())
+        return;
+      List<SearchTask> forked = new ArrayList<>();
+      Solver solver = new Solver(state);
+      solver.setCancel(stop);
+      solver.setTranspositionTable(table);
+      solver.setSplitter(s -> {
+        // Only give work away when no one has any to steal.
+        if (ForkJoinTask.getSurplusQueuedTaskCount() <= 0)
+          for (SearchState child : s.split())
+          {
+            SearchTask task = new SearchTask(child);
+            task.fork();
+            forked.add(task);
+          }
+      });
+
+      boolean solved = solver.search();
+      while (solved && !stop.get())
+      {
+        foundSolution(state);
+        solved = !stop.get() && solver.next();
+      }
+      nodes.addAndGet(solver.getNodes());
+
+      for (SearchTask task : forked)
+        task.join();
+    }
+  }
+}
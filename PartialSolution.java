@@ -0,0 +1,223 @@
+import java.util.function.Supplier;
+
+/**
+ * class PartialSolution
+ * <p>
+ * A {@link Level} drawn part of the way to a solution by an {@link AnytimeSolver}, with how far it got and when.
+ * <p>
+ * One partial solution is better than another if it has more flows connected, or as many and more cells filled. A complete one is a solution.
+ * <p>
+ * The {@link Level} may not be made until {@link PartialSolution#getLevel()} is first called, so that a search can hand over many partial solutions cheaply.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class PartialSolution
+{
+  /**
+   * The {@link Level} with every flow drawn as far as it got, or {@code null} if it hasn't been made yet.
+   */
+  private Level level;
+  /**
+   * Makes {@link PartialSolution#level} when it is first needed, or {@code null} once it has been made.
+   */
+  private Supplier<Level> source;
+  /**
+   * How many flows reach both of their {@link PathType#START}s.
+   */
+  private final int connectedFlows;
+  /**
+   * How many flows there are.
+   */
+  private final int flowCount;
+  /**
+   * How many cells are filled.
+   */
+  private final int filledCells;
+  /**
+   * How many cells there are.
+   */
+  private final int cellCount;
+  /**
+   * How many moves the search had tried when it found this.
+   */
+  private final long nodes;
+  /**
+   * How long the search had taken when it found this, in nanoseconds.
+   */
+  private final long nanos;
+
+  /**
+   * Constructor for PartialSolution
+   * <p>
+   * Creates a {@code PartialSolution} from what a search found.
+   *
+   * @param level          The {@link Level} with every flow drawn as far as it got.
+   * @param connectedFlows How many flows reach both of their {@link PathType#START}s.
+   * @param flowCount      How many flows there are.
+   * @param filledCells    How many cells are filled.
+   * @param cellCount      How many cells there are.
+   * @param nodes          How many moves the search had tried when it found this.
+   * @param nanos          How long the search had taken when it found this, in nanoseconds.
+   */
+  public PartialSolution(Level level, int connectedFlows, int flowCount, int filledCells, int cellCount, long nodes, long nanos)
+  {
+    this(connectedFlows, flowCount, filledCells, cellCount, nodes, nanos);
+    this.level = level;
+  }
+
+  /**
+   * Constructor for PartialSolution
+   * <p>
+   * Creates a {@code PartialSolution} from what a search found, without making its {@link Level} until it is asked for.
+   *
+   * @param source         Makes the {@link Level} with every flow drawn as far as it got. Called at most once.
+   * @param connectedFlows How many flows reach both of their {@link PathType#START}s.
+   * @param flowCount      How many flows there are.
+   * @param filledCells    How many cells are filled.
+   * @param cellCount      How many cells there are.
+   * @param nodes          How many moves the search had tried when it found this.
+   * @param nanos          How long the search had taken when it found this, in nanoseconds.
+   */
+  PartialSolution(Supplier<Level> source, int connectedFlows, int flowCount, int filledCells, int cellCount, long nodes, long nanos)
+  {
+    this(connectedFlows, flowCount, filledCells, cellCount, nodes, nanos);
+    this.source = source;
+  }
+
+  /**
+   * Creates a {@code PartialSolution} without its {@link Level}.
+   *
+   * @param connectedFlows How many flows reach both of their {@link PathType#START}s.
+   * @param flowCount      How many flows there are.
+   * @param filledCells    How many cells are filled.
+   * @param cellCount      How many cells there are.
+   * @param nodes          How many moves the search had tried when it found this.
+   * @param nanos          How long the search had taken when it found this, in nanoseconds.
+   */
+  private PartialSolution(int connectedFlows, int flowCount, int filledCells, int cellCount, long nodes, long nanos)
+  {
+    this.connectedFlows = connectedFlows;
+    this.flowCount = flowCount;
+    this.filledCells = filledCells;
+    this.cellCount = cellCount;
+    this.nodes = nodes;
+    this.nanos = nanos;
+  }
+
+  /**
+   * Gets the {@link Level} with every flow drawn as far as it got, with directions set.
+   *
+   * @return the {@link Level}.
+   */
+  public synchronized Level getLevel()
+  {
+    if (level == null)
+    {
+      level = source.get();
+      source = null;
+    }
+    return level;
+  }
+
+  /**
+   * Gets how many flows reach both of their {@link PathType#START}s.
+   *
+   * @return the number of connected flows.
+   */
+  public int getConnectedFlows()
+  {
+    return connectedFlows;
+  }
+
+  /**
+   * Gets how many flows there are.
+   *
+   * @return the number of flows.
+   */
+  public int getFlowCount()
+  {
+    return flowCount;
+  }
+
+  /**
+   * Gets how many cells are filled.
+   *
+   * @return the number of filled cells.
+   */
+  public int getFilledCells()
+  {
+    return filledCells;
+  }
+
+  /**
+   * Gets how many cells there are.
+   *
+   * @return the number of cells.
+   */
+  public int getCellCount()
+  {
+    return cellCount;
+  }
+
+  /**
+   * Gets how much of the {@link Level} is filled.
+   *
+   * @return the fraction of cells that are filled, between {@code 0} and {@code 1}.
+   */
+  public double getCoverage()
+  {
+    return (double) filledCells / cellCount;
+  }
+
+  /**
+   * Checks if this is a solution: every flow connected and every cell filled.
+   *
+   * @return whether the {@link Level} is solved.
+   */
+  public boolean isComplete()
+  {
+    return connectedFlows == flowCount && filledCells == cellCount;
+  }
+
+  /**
+   * Checks if this is better than another {@code PartialSolution} of the same {@link Level}.
+   *
+   * @param other The other {@code PartialSolution}, or {@code null}.
+   * @return whether this has more flows connected, or as many and more cells filled; always {@code true} if {@code other} is {@code null}.
+   */
+  public boolean isBetterThan(PartialSolution other)
+  {
+    if (other == null)
+      return true;
+    if (connectedFlows != other.connectedFlows)
+      return connectedFlows > other.connectedFlows;
+    return filledCells > other.filledCells;
+  }
+
+  /**
+   * Gets how many moves the search had tried when it found this.
+   *
+   * @return the number of nodes searched.
+   */
+  public long getNodes()
+  {
+    return nodes;
+  }
+
+  /**
+   * Gets how long the search had taken when it found this.
+   *
+   * @return the time taken, in nanoseconds.
+   */
+  public long getNanos()
+  {
+    return nanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    return connectedFlows + "/" + flowCount + " flows, " + filledCells + "/" + cellCount + " cells after " + nodes + " nodes in " + (nanos / 1000000) + "ms";
+  }
+}
@@ -2,31 +2,50 @@
  * class Path
  * <p>
  * Represents a single path within a {@link Cube}.
+ * <p>
+ * {@code Path}s can't be changed, and there is only one of each: get them with {@link Path#get(PathType, PathColor, PathDirection)}, and compare them with {@code ==}.
+ * To change a path in a {@link Level}, replace it (see {@link Level#setPath(Point3I, Path)} and {@link Level#setDirection(Point3I, PathDirection)}).
  *
  * @author Kevin C.
- * @version 1.2
+ * @version 1.4
  */
-public class Path
+public final class Path
 {
+  /**
+   * All of the {@code Path}s there are, indexed by {@link PathType#ordinal()}, then {@link PathColor#getId()}, then {@link PathDirection#ordinal()} {@code + 1} (0 being no direction).
+   */
+  private static final Path[][][] PATHS = new Path[PathType.values().length][PathColor.MAX_COUNT][PathDirection.values().length + 1];
+
+  static
+  {
+    for (PathType type : PathType.values())
+      for (int c = 0; c < PathColor.MAX_COUNT; c++)
+      {
+        PATHS[type.ordinal()][c][0] = new Path(type, PathColor.get(c), null);
+        for (PathDirection direction : PathDirection.values())
+          PATHS[type.ordinal()][c][direction.ordinal() + 1] = new Path(type, PathColor.get(c), direction);
+      }
+  }
+
   /**
    * The type of path: Start or Path
    */
-  private PathType type;
+  private final PathType type;
   /**
    * The color of the path.
    */
-  private PathColor color;
+  private final PathColor color;
   /**
    * The direction of the next Path in the flow.
    */
-  private PathDirection direction;
+  private final PathDirection direction;
 
   /**
    * Constructor for Path
    * <p>
-   * Creates a new {@code Path} object with the given type, color, and direction.
+   * Creates a new {@code Path} object with the given type, color, and direction. Only used to fill {@link Path#PATHS}.
    */
-  public Path(PathType inputType, PathColor inputColor, PathDirection inputDirection)
+  private Path(PathType inputType, PathColor inputColor, PathDirection inputDirection)
   {
     type = inputType;
     color = inputColor;
@@ -34,45 +53,39 @@ public class Path
   }
 
   /**
-   * Constructor for Path
-   * <p>
-   * Creates a new {@code Path} object with the given type and color. Direction is set to null.
-   */
-  public Path(PathType inputType, PathColor inputColor)
-  {
-    type = inputType;
-    color = inputColor;
-    direction = null;
-  }
-
-  /**
-   * Changes this {@code Path}'s {@link PathType} to the specified {@link PathType}.
+   * Gets the {@code Path} with the given type, color, and direction.
    *
-   * @param newType The new type of this path.
+   * @param type      The type of the path.
+   * @param color     The color of the path.
+   * @param direction The flow direction of the path. May be {@code null}.
+   * @return the one {@code Path} with those values.
    */
-  public void setType(PathType newType)
+  public static Path get(PathType type, PathColor color, PathDirection direction)
   {
-    type = newType;
+    return PATHS[type.ordinal()][color.getId()][direction == null ? 0 : direction.ordinal() + 1];
   }
 
   /**
-   * Changes this {@code Path}'s {@link PathColor} to the specified {@link PathColor}.
+   * Gets the {@code Path} with the given type and color, and no direction.
    *
-   * @param newColor The new color of this path.
+   * @param type  The type of the path.
+   * @param color The color of the path.
+   * @return the one {@code Path} with those values.
    */
-  public void setColor(PathColor newColor)
+  public static Path get(PathType type, PathColor color)
   {
-    color = newColor;
+    return get(type, color, null);
   }
 
   /**
-   * Changes this {@code Path}'s flow direction to the specified {@link PathDirection}.
+   * Gets the {@code Path} that is the same as this one, but with a different flow direction.
    *
-   * @param newDirection The new flow direction of this path.
+   * @param newDirection The flow direction of the path. May be {@code null}.
+   * @return the one {@code Path} with this type and color, and the given direction.
    */
-  public void setDirection(PathDirection newDirection)
+  public Path withDirection(PathDirection newDirection)
   {
-    direction = newDirection;
+    return get(type, color, newDirection);
   }
 
   /**
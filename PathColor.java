@@ -1,66 +1,174 @@
 import java.awt.Color;
 
 /**
- * Enumeration PathColor
+ * class PathColor
  * <p>
- * The different colors the paths can be
+ * The different colors the paths can be.
+ * <p>
+ * Each {@code PathColor} has a small int ID (see {@link PathColor#getId()}), which is what a {@link Cube} stores.
+ * The first seven are the named colors below; the rest, up to {@link PathColor#MAX_COUNT}, are made by spreading hues around the color wheel.
+ * There is only one {@code PathColor} for each ID, so they can be compared with {@code ==}, and their {@link Color}s and OpenGL colors are made once, not every frame.
  *
  * @author Kevin C. & Stanley S.
- * @version 1.1
+ * @version 1.2
  */
-public enum PathColor
+public final class PathColor
 {
-  RED, GREEN, BLUE, YELLOW, ORANGE, MAGENTA, AQUA;
+  /**
+   * The number of different colors that are supported. A {@link Cube} has room for this many in each cell.
+   */
+  public static final int MAX_COUNT = 511;
 
   /**
-   * An array of all the different {@code PathColor} types.
+   * Every {@code PathColor}, by ID.
    * <p>
    * Used in {@link PathColor#get(int)}.
    */
-  private static final PathColor[] VALUES = values();
+  private static final PathColor[] VALUES = new PathColor[MAX_COUNT];
+
+  public static final PathColor RED = new PathColor(0, "RED", new Color(255, 63, 63, 255));
+  public static final PathColor GREEN = new PathColor(1, "GREEN", new Color(0, 191, 0, 255));
+  public static final PathColor BLUE = new PathColor(2, "BLUE", new Color(0, 127, 255, 255));
+  public static final PathColor YELLOW = new PathColor(3, "YELLOW", new Color(221, 221, 0, 255));
+  public static final PathColor ORANGE = new PathColor(4, "ORANGE", new Color(255, 127, 0, 255));
+  public static final PathColor MAGENTA = new PathColor(5, "MAGENTA", new Color(221, 0, 221, 255));
+  public static final PathColor AQUA = new PathColor(6, "AQUA", new Color(0, 221, 221, 255));
+
+  /**
+   * The number of named colors, from {@link PathColor#RED} to {@link PathColor#AQUA}.
+   */
+  public static final int NAMED_COUNT = 7;
+
+  static
+  {
+    // Step around the color wheel by the golden ratio so that colors next to each other in ID look different,
+    // and take turns between a few saturations and brightnesses so that similar hues can still be told apart.
+    float[] saturations = {0.75f, 1f, 0.5f};
+    float[] brightnesses = {0.95f, 0.75f, 0.85f};
+    for (int id = NAMED_COUNT; id < MAX_COUNT; id++)
+    {
+      float hue = (id * 0.618034f) % 1f;
+      Color color = Color.getHSBColor(hue, saturations[id % saturations.length], brightnesses[(id / saturations.length) % brightnesses.length]);
+      new PathColor(id, "COLOR_" + id, color);
+    }
+  }
+
+  /**
+   * The ID of this color.
+   */
+  private final int id;
+  /**
+   * The name of this color.
+   */
+  private final String name;
+  /**
+   * This color, as a {@link Color}.
+   */
+  private final Color color;
+  /**
+   * A darker version of {@link PathColor#color}.
+   */
+  private final Color darker;
+  /**
+   * The red, green and blue of {@link PathColor#color}, between 0 and 1, for OpenGL.
+   */
+  private final float[] gl;
+  /**
+   * The red, green and blue of {@link PathColor#darker}, between 0 and 1, for OpenGL.
+   */
+  private final float[] darkerGL;
+
+  /**
+   * Constructor for PathColor
+   * <p>
+   * Creates the {@code PathColor} with the given ID, and puts it in {@link PathColor#VALUES}. Only used to fill {@link PathColor#VALUES}.
+   *
+   * @param id    The ID of the color.
+   * @param name  The name of the color.
+   * @param color What the color looks like.
+   */
+  private PathColor(int id, String name, Color color)
+  {
+    this.id = id;
+    this.name = name;
+    this.color = color;
+    darker = color.darker();
+    gl = color.getRGBColorComponents(null);
+    darkerGL = darker.getRGBColorComponents(null);
+    VALUES[id] = this;
+  }
 
   /**
-   * The number of different colors that are supported.
+   * Gets the ID of this color, which is between {@code 0} and {@link PathColor#MAX_COUNT}.
+   *
+   * @return the ID of this color.
    */
-  public static final int COUNT = VALUES.length;
+  public int getId()
+  {
+    return id;
+  }
 
   /**
-   * Gets the color of the enumerated value.
+   * Gets what this color looks like.
    *
-   * @return The color equivalent to the value.
+   * @return The {@link Color} equivalent to the value.
    */
   public Color toColor()
   {
-    switch (this)
-    {
-      case RED:
-        return new Color(255, 63, 63, 255);
-      case GREEN:
-        return new Color(0, 191, 0, 255);
-      case BLUE:
-        return new Color(0, 127, 255, 255);
-      case YELLOW:
-        return new Color(221, 221, 0, 255);
-      case ORANGE:
-        return new Color(255, 127, 0, 255);
-      case MAGENTA:
-        return new Color(221, 0, 221, 255);
-      case AQUA:
-        return new Color(0, 221, 221, 255);
-      default:
-        return null;
-    }
+    return color;
+  }
+
+  /**
+   * Gets a darker version of {@link PathColor#toColor()}, as made by {@link Color#darker()}.
+   *
+   * @return the darker color.
+   */
+  public Color toDarkerColor()
+  {
+    return darker;
+  }
+
+  /**
+   * Gets the red, green and blue of this color, between 0 and 1, to give to OpenGL. See {@link Display#setColor3(float[])}.
+   * <p>
+   * The same array is given out every time, so it must not be changed.
+   *
+   * @return the red, green and blue of this color.
+   */
+  public float[] toGL()
+  {
+    return gl;
   }
 
   /**
-   * Gets a Path color from an enumerated integer value.
+   * Gets the red, green and blue of {@link PathColor#toDarkerColor()}, between 0 and 1, to give to OpenGL.
+   * <p>
+   * The same array is given out every time, so it must not be changed.
    *
-   * @param i the integer value of the {@code PathColor}
+   * @return the red, green and blue of the darker color.
+   */
+  public float[] toDarkerGL()
+  {
+    return darkerGL;
+  }
+
+  /**
+   * Gets the Path color with a given ID.
+   *
+   * @param i the ID of the {@code PathColor}
    * @return the corresponding {@code PathColor} of the given integer.
+   * @throws IndexOutOfBoundsException if there is no color with that ID.
    */
   public static PathColor get(int i)
   {
-    return VALUES[Math.abs(i) % COUNT];
-    //throw new IndexOutOfBoundsException("(positive number) % "+COUNT+" isn't between 0 and "+COUNT+".");
+    if (i < 0 || i >= MAX_COUNT)
+      throw new IndexOutOfBoundsException(i + " isn't between 0 and " + MAX_COUNT + ".");
+    return VALUES[i];
+  }
+
+  @Override
+  public String toString()
+  {
+    return name;
   }
 }
@@ -1,20 +1,122 @@
 /**
  * enumeration PathDirection
  * <p>
- * Represents the direction of a {@link Path}'s flow. Primarily used to display a level (see {@link DisplayLevel#drawPath(Point3I, double, double yPos, double)}), and finding a flow (see {@link Level#getFlowPath(PathColor)}).
+ * Represents the direction of a {@link Path}'s flow. Primarily used to display a level (see {@link DisplayLevel#drawPath(int, int, int, double, double, double)}), and finding a flow (see {@link Level#getFlowPath(PathColor)}).
  *
  * @author Kevin C. & Stanley S.
- * @version 1.1
+ * @version 1.2
  */
 public enum PathDirection
 {
-  UP, DOWN, LEFT, RIGHT, IN, OUT;
+  UP(0, -1, 0), DOWN(0, 1, 0), LEFT(-1, 0, 0), RIGHT(1, 0, 0), IN(0, 0, 1), OUT(0, 0, -1);
 
   /**
    * An array of all of the different directions.
    */
   public static final PathDirection[] DIRECTIONS = new PathDirection[]{PathDirection.LEFT, PathDirection.RIGHT, PathDirection.UP, PathDirection.DOWN, PathDirection.OUT, PathDirection.IN};
 
+  /**
+   * The opposite of each direction, indexed by {@link PathDirection#ordinal()}. See {@link PathDirection#reverse()}.
+   */
+  private static final PathDirection[] REVERSES = new PathDirection[]{DOWN, UP, RIGHT, LEFT, OUT, IN};
+
+  /**
+   * How far one unit in this direction moves along each axis.
+   */
+  private final int dx, dy, dz;
+
+  /**
+   * Constructor for PathDirection
+   * <p>
+   * Creates a direction that moves the given amount along each axis.
+   *
+   * @param dx How far this direction moves along the X axis.
+   * @param dy How far this direction moves along the Y axis.
+   * @param dz How far this direction moves along the Z axis.
+   */
+  PathDirection(int dx, int dy, int dz)
+  {
+    this.dx = dx;
+    this.dy = dy;
+    this.dz = dz;
+  }
+
+  /**
+   * Gets how far one unit in this direction moves along the X axis.
+   *
+   * @return {@code -1}, {@code 0} or {@code 1}.
+   */
+  public int getDX()
+  {
+    return dx;
+  }
+
+  /**
+   * Gets how far one unit in this direction moves along the Y axis.
+   *
+   * @return {@code -1}, {@code 0} or {@code 1}.
+   */
+  public int getDY()
+  {
+    return dy;
+  }
+
+  /**
+   * Gets how far one unit in this direction moves along the Z axis.
+   *
+   * @return {@code -1}, {@code 0} or {@code 1}.
+   */
+  public int getDZ()
+  {
+    return dz;
+  }
+
+  /**
+   * Gets how far one unit in this direction moves a cell's index in a {@link Cube} of the given size. See {@link Cube#indexOf(int, int, int)}.
+   * <p>
+   * This doesn't check whether the move leaves the {@link Cube}.
+   *
+   * @param size The size of the {@link Cube}.
+   * @return the amount to add to an index to get the index of its neighbour in this direction.
+   */
+  public int indexOffset(int size)
+  {
+    return dx + size * (dy + size * dz);
+  }
+
+  /**
+   * Gets the offsets of every direction for a {@link Cube} of the given size. See {@link PathDirection#indexOffset(int)}.
+   *
+   * @param size The size of the {@link Cube}.
+   * @return a new array of the index offsets of each direction, indexed by {@link PathDirection#ordinal()}.
+   */
+  public static int[] indexOffsets(int size)
+  {
+    PathDirection[] values = values();
+    int[] offsets = new int[values.length];
+    for (int i = 0; i < values.length; i++)
+      offsets[i] = values[i].indexOffset(size);
+    return offsets;
+  }
+
+  /**
+   * The direction between two neighbouring points.
+   *
+   * @param from Starting position.
+   * @param to   Ending position.
+   * @return the direction to move one unit in to get from {@code from} to {@code to}, or {@code null} if they are not next to each other.
+   */
+  public static PathDirection between(Point3I from, Point3I to)
+  {
+    int x = to.getX() - from.getX();
+    int y = to.getY() - from.getY();
+    int z = to.getZ() - from.getZ();
+    for (PathDirection direction : DIRECTIONS)
+      if (direction.dx == x && direction.dy == y && direction.dz == z)
+        return direction;
+    return null;
+  }
+
   /**
    * The direction to get to {@link Point3I} {@code to} from {@link Point3I} {@code from}.
    *
@@ -24,17 +126,19 @@ public enum PathDirection
    */
   public static PathDirection getDirection(Point3I from, Point3I to)
   {
-    Point3I change = to.add(-from.getX(), -from.getY(), -from.getZ());
-    if (change.getX() == 0 && change.getY() == 0 && change.getZ() == 0)
+    int changeX = to.getX() - from.getX();
+    int changeY = to.getY() - from.getY();
+    int changeZ = to.getZ() - from.getZ();
+    if (changeX == 0 && changeY == 0 && changeZ == 0)
     {
       return null;
     }
-    if (change.getX() == 0 && change.getY() == 0)
-      return change.getZ() > 0 ? IN : OUT;
-    if (change.getX() == 0 && change.getZ() == 0)
-      return change.getY() > 0 ? DOWN : UP;
-    if (change.getY() == 0 && change.getZ() == 0)
-      return change.getX() > 0 ? RIGHT : LEFT;
+    if (changeX == 0 && changeY == 0)
+      return changeZ > 0 ? IN : OUT;
+    if (changeX == 0 && changeZ == 0)
+      return changeY > 0 ? DOWN : UP;
+    if (changeY == 0 && changeZ == 0)
+      return changeX > 0 ? RIGHT : LEFT;
     return null; // TODO: What if they are not perfectly on the same axis?
   }
 
@@ -46,23 +150,7 @@ public enum PathDirection
    */
   public Point3I move(Point3I pointToMove)
   {
-    switch (this)
-    {
-      case UP:
-        return pointToMove.add(0, -1, 0);
-      case DOWN:
-        return pointToMove.add(0, 1, 0);
-      case LEFT:
-        return pointToMove.add(-1, 0, 0);
-      case RIGHT:
-        return pointToMove.add(1, 0, 0);
-      case IN:
-        return pointToMove.add(0, 0, 1);
-      case OUT:
-        return pointToMove.add(0, 0, -1);
-      default:
-        return pointToMove;
-    }
+    return pointToMove.add(dx, dy, dz);
   }
 
   /**
@@ -72,22 +160,6 @@ public enum PathDirection
    */
   public PathDirection reverse()
   {
-    switch (this)
-    {
-      case UP:
-        return DOWN;
-      case DOWN:
-        return UP;
-      case LEFT:
-        return RIGHT;
-      case RIGHT:
-        return LEFT;
-      case IN:
-        return OUT;
-      case OUT:
-        return IN;
-      default:
-        return null;
-    }
+    return REVERSES[ordinal()];
   }
 }
@@ -6,10 +6,20 @@ import java.io.Serializable;
  * A three dimensional point of integers to represent a location is space.
  *
  * @author Stanley S.
- * @version 1.1
+ * @version 1.2
  */
 public class Point3I implements Serializable, Cloneable
 {
+  /**
+   * How many bits each coordinate takes up in a packed <code>long</code>. See {@link Point3I#pack(int, int, int)}.
+   */
+  public static final int PACKED_BITS = 21;
+
+  /**
+   * Mask of the bits of one coordinate in a packed <code>long</code>.
+   */
+  private static final long PACKED_MASK = (1L << PACKED_BITS) - 1;
+
   /**
    * The X coordinate of this <code>Point3I</code>.
    *
@@ -220,6 +230,94 @@ public class Point3I implements Serializable, Cloneable
     return super.equals(obj);
   }
 
+  /**
+   * Returns a hash code for this <code>Point3I</code>, so that it
+   * can be used in hash based collections.
+   *
+   * @return a hash code for this <code>Point3I</code>.
+   */
+  @Override
+  public int hashCode()
+  {
+    return (getX() * 73856093) ^ (getY() * 19349663) ^ (getZ() * 83492791);
+  }
+
+  /**
+   * Returns this <code>Point3I</code> packed into a single
+   * <code>long</code>. See {@link Point3I#pack(int, int, int)}.
+   *
+   * @return the packed coordinates of this <code>Point3I</code>.
+   */
+  public long toPacked()
+  {
+    return pack(getX(), getY(), getZ());
+  }
+
+  /**
+   * Packs three coordinates into a single <code>long</code>, using
+   * {@link Point3I#PACKED_BITS} bits for each, X being the lowest.
+   * <p>
+   * Each coordinate must be between <code>-2^20</code> and
+   * <code>2^20 - 1</code>, or it will not unpack to the same value.
+   *
+   * @param x the X coordinate to pack
+   * @param y the Y coordinate to pack
+   * @param z the Z coordinate to pack
+   * @return the packed coordinates.
+   */
+  public static long pack(int x, int y, int z)
+  {
+    return (x & PACKED_MASK) | ((y & PACKED_MASK) << PACKED_BITS) | ((z & PACKED_MASK) << (2 * PACKED_BITS));
+  }
+
+  /**
+   * Returns the X coordinate of a packed <code>long</code>.
+   * See {@link Point3I#pack(int, int, int)}.
+   *
+   * @param packed the packed coordinates
+   * @return the X coordinate.
+   */
+  public static int unpackX(long packed)
+  {
+    return (int) (packed << (64 - PACKED_BITS) >> (64 - PACKED_BITS));
+  }
+
+  /**
+   * Returns the Y coordinate of a packed <code>long</code>.
+   * See {@link Point3I#pack(int, int, int)}.
+   *
+   * @param packed the packed coordinates
+   * @return the Y coordinate.
+   */
+  public static int unpackY(long packed)
+  {
+    return (int) (packed << (64 - 2 * PACKED_BITS) >> (64 - PACKED_BITS));
+  }
+
+  /**
+   * Returns the Z coordinate of a packed <code>long</code>.
+   * See {@link Point3I#pack(int, int, int)}.
+   *
+   * @param packed the packed coordinates
+   * @return the Z coordinate.
+   */
+  public static int unpackZ(long packed)
+  {
+    return (int) (packed << (64 - 3 * PACKED_BITS) >> (64 - PACKED_BITS));
+  }
+
+  /**
+   * Creates a new <code>Point3I</code> from a packed <code>long</code>.
+   * See {@link Point3I#pack(int, int, int)}.
+   *
+   * @param packed the packed coordinates
+   * @return a new <code>Point3I</code> at the packed coordinates.
+   */
+  public static Point3I fromPacked(long packed)
+  {
+    return new Point3I(unpackX(packed), unpackY(packed), unpackZ(packed));
+  }
+
   @Override
   public String toString()
   {
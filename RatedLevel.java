@@ -0,0 +1,101 @@
+/**
+ * class RatedLevel
+ * <p>
+ * A {@link Level} with how hard it was for a {@link Solver} to solve: how many times it had to choose between moves (see {@link Solver#getDecisions()}). See {@link DifficultySearch}.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public class RatedLevel
+{
+  /**
+   * The {@link Level}, with only its {@link PathType#START}s drawn.
+   */
+  private final Level level;
+  /**
+   * How the {@link Solver} that rated it ended.
+   */
+  private final SolverStatus status;
+  /**
+   * How many times the {@link Solver} had to choose between moves.
+   */
+  private final long decisions;
+  /**
+   * How many moves the {@link Solver} tried.
+   */
+  private final long nodes;
+
+  /**
+   * Constructor for RatedLevel
+   * <p>
+   * Creates a {@code RatedLevel} from what a {@link Solver} found.
+   *
+   * @param level     The {@link Level}, with only its {@link PathType#START}s drawn.
+   * @param status    How the {@link Solver} ended.
+   * @param decisions How many times the {@link Solver} had to choose between moves.
+   * @param nodes     How many moves the {@link Solver} tried.
+   */
+  public RatedLevel(Level level, SolverStatus status, long decisions, long nodes)
+  {
+    this.level = level;
+    this.status = status;
+    this.decisions = decisions;
+    this.nodes = nodes;
+  }
+
+  /**
+   * Gets the {@link Level}.
+   *
+   * @return the {@link Level}, with only its {@link PathType#START}s drawn.
+   */
+  public Level getLevel()
+  {
+    return level;
+  }
+
+  /**
+   * Gets how the {@link Solver} that rated the {@link Level} ended. Only a {@link SolverStatus#SOLVED} rating is known to be right.
+   *
+   * @return the {@link SolverStatus}.
+   */
+  public SolverStatus getStatus()
+  {
+    return status;
+  }
+
+  /**
+   * Checks if the {@link Level} was solved when it was rated.
+   *
+   * @return whether the status is {@link SolverStatus#SOLVED}.
+   */
+  public boolean isSolved()
+  {
+    return status == SolverStatus.SOLVED;
+  }
+
+  /**
+   * Gets how many times the {@link Solver} had to choose between moves, as none of them was forced, to solve the {@link Level}.
+   *
+   * @return the number of decisions.
+   */
+  public long getDecisions()
+  {
+    return decisions;
+  }
+
+  /**
+   * Gets how many moves the {@link Solver} tried.
+   *
+   * @return the number of nodes searched.
+   */
+  public long getNodes()
+  {
+    return nodes;
+  }
+
+  @Override
+  public String toString()
+  {
+    return status + " with " + decisions + " decisions in " + nodes + " nodes";
+  }
+}
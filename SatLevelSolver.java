@@ -0,0 +1,377 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * class SatLevelSolver
+ * <p>
+ * Finds a solution to a {@link Level}, or proves that there is none, by turning it into a SAT problem and solving that with a {@link SatSolver}.
+ * <p>
+ * There is a variable for each color each cell could be, and one for each pair of neighbouring cells that a flow could go between (an edge).
+ * The clauses say that:
+ * <ul>
+ * <li>every cell is exactly one color, and each {@link PathType#START} is its own color;</li>
+ * <li>the two cells of an edge that is used are the same color;</li>
+ * <li>each {@link PathType#START} has exactly one edge used, and every other cell exactly two.</li>
+ * </ul>
+ * Neighbours are found the same way as a {@link Solver} does, over {@link PathDirection#DIRECTIONS}.
+ * <p>
+ * That alone still allows loops that don't touch a {@link PathType#START}. When a model has one, a clause is added saying that not every edge of that loop can be used, and the {@link SatSolver} is asked again.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class SatLevelSolver
+{
+  /**
+   * How many literals {@link SatLevelSolver#atMostOne(int[])} handles by forbidding each pair. Longer lists use a sequential counter instead, which needs fewer clauses.
+   */
+  private static final int PAIRWISE_LIMIT = 6;
+
+  /**
+   * The {@link Level} being solved.
+   */
+  private final Level puzzle;
+  /**
+   * The starts, neighbours and colors of {@link SatLevelSolver#puzzle}.
+   */
+  private final SearchState state;
+  /**
+   * The solver the clauses are given to.
+   */
+  private final SatSolver sat = new SatSolver();
+  /**
+   * The variable for each cell being each color, at {@code cell * colorCount + c}.
+   */
+  private final int[] colorVariables;
+  /**
+   * The variable for the edge from each cell to each neighbour, at {@code cell * DIRECTION_COUNT + d} as in {@link SearchState#neighbours}. Both cells of an edge share its variable. {@code 0} where there is no neighbour.
+   */
+  private final int[] edgeVariables;
+  /**
+   * How many loops have been ruled out.
+   */
+  private int loops;
+
+  /**
+   * Constructor for SatLevelSolver
+   * <p>
+   * Creates a {@code SatLevelSolver} for a {@link Level}, and encodes it. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   *
+   * @param puzzle The {@link Level} to solve.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public SatLevelSolver(Level puzzle)
+  {
+    this.puzzle = puzzle;
+    state = new SearchState(puzzle);
+    int volume = state.volume;
+    int colorCount = state.colorCount;
+    colorVariables = new int[volume * colorCount];
+    edgeVariables = new int[volume * SearchState.DIRECTION_COUNT];
+
+    for (int i = 0; i < colorVariables.length; i++)
+      colorVariables[i] = sat.newVariable();
+    // DIRECTIONS are in opposite pairs, so the way back from a neighbour is d ^ 1.
+    for (int cell = 0; cell < volume; cell++)
+      for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+      {
+        int neighbour = state.neighbours[cell * SearchState.DIRECTION_COUNT + d];
+        if (neighbour > cell)
+        {
+          int edge = sat.newVariable();
+          edgeVariables[cell * SearchState.DIRECTION_COUNT + d] = edge;
+          edgeVariables[neighbour * SearchState.DIRECTION_COUNT + (d ^ 1)] = edge;
+        }
+      }
+
+    encodeColors();
+    encodeEdges();
+    encodeDegrees();
+  }
+
+  /**
+   * Searches for a solution.
+   *
+   * @return the {@link SolverResult}, with the solved {@link Level} if there is one. Its node count is the number of decisions the {@link SatSolver} made.
+   * It is {@link SolverStatus#STOPPED} if the search was cancelled or ran out of time.
+   */
+  public SolverResult solve()
+  {
+    long start = System.nanoTime();
+    boolean[] onFlow = new boolean[state.volume];
+    Boolean satisfiable;
+    while ((satisfiable = sat.solve()) == Boolean.TRUE)
+    {
+      SearchState solution = new SearchState(state);
+      Arrays.fill(onFlow, false);
+      for (int c = 0; c < state.colorCount; c++)
+        traceFlow(c, solution, onFlow);
+      if (!blockLoops(onFlow))
+        return new SolverResult(SolverStatus.SOLVED, solution.toLevel(), sat.getDecisions(), System.nanoTime() - start);
+    }
+    SolverStatus status = satisfiable == null ? SolverStatus.STOPPED : SolverStatus.UNSOLVABLE;
+    return new SolverResult(status, Collections.<Level>emptyList(), sat.getDecisions(), System.nanoTime() - start);
+  }
+
+  /**
+   * Makes the search stop soon after a flag is set. A stopped search is {@link SolverStatus#STOPPED}.
+   *
+   * @param cancel The flag to watch, or {@code null} to never stop.
+   */
+  void setCancel(AtomicBoolean cancel)
+  {
+    sat.setCancel(cancel);
+  }
+
+  /**
+   * Makes the search stop soon after a time. A stopped search is {@link SolverStatus#STOPPED}.
+   *
+   * @param deadline The {@link System#nanoTime()} to stop at.
+   */
+  void setDeadline(long deadline)
+  {
+    sat.setDeadline(deadline);
+  }
+
+  /**
+   * Gets the {@link Level} being solved.
+   *
+   * @return the {@link Level}.
+   */
+  public Level getPuzzle()
+  {
+    return puzzle;
+  }
+
+  /**
+   * Gets the {@link SatSolver} the {@link Level} was encoded into, to see how big the encoding is or how hard it was.
+   *
+   * @return the {@link SatSolver}.
+   */
+  public SatSolver getSatSolver()
+  {
+    return sat;
+  }
+
+  /**
+   * Gets how many loops away from the {@link PathType#START}s had to be ruled out so far.
+   *
+   * @return the number of loops ruled out.
+   */
+  public int getLoops()
+  {
+    return loops;
+  }
+
+  /**
+   * Adds the clauses that make every cell exactly one color, with each {@link PathType#START} its own color.
+   */
+  private void encodeColors()
+  {
+    int colorCount = state.colorCount;
+    int[] literals = new int[colorCount];
+    for (int cell = 0; cell < state.volume; cell++)
+    {
+      int known = state.cells[cell];
+      if (known != SearchState.EMPTY)
+      {
+        for (int c = 0; c < colorCount; c++)
+          sat.addClause(c == known ? colorVariables[cell * colorCount + c] : -colorVariables[cell * colorCount + c]);
+        continue;
+      }
+      for (int c = 0; c < colorCount; c++)
+        literals[c] = colorVariables[cell * colorCount + c];
+      sat.addClause(literals);
+      atMostOne(literals);
+    }
+  }
+
+  /**
+   * Adds the clauses that make the two cells of a used edge the same color.
+   */
+  private void encodeEdges()
+  {
+    int colorCount = state.colorCount;
+    for (int cell = 0; cell < state.volume; cell++)
+      for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+      {
+        int neighbour = state.neighbours[cell * SearchState.DIRECTION_COUNT + d];
+        if (neighbour <= cell)
+          continue;
+        int edge = edgeVariables[cell * SearchState.DIRECTION_COUNT + d];
+        for (int c = 0; c < colorCount; c++)
+        {
+          int here = colorVariables[cell * colorCount + c];
+          int there = colorVariables[neighbour * colorCount + c];
+          sat.addClause(-edge, -here, there);
+          sat.addClause(-edge, -there, here);
+        }
+      }
+  }
+
+  /**
+   * Adds the clauses that give each {@link PathType#START} exactly one used edge, and every other cell exactly two.
+   */
+  private void encodeDegrees()
+  {
+    int[] edges = new int[SearchState.DIRECTION_COUNT];
+    for (int cell = 0; cell < state.volume; cell++)
+    {
+      int count = 0;
+      for (int d = 0; d < SearchState.DIRECTION_COUNT; d++)
+      {
+        int edge = edgeVariables[cell * SearchState.DIRECTION_COUNT + d];
+        if (edge != 0)
+          edges[count++] = edge;
+      }
+      int degree = state.cells[cell] == SearchState.EMPTY ? 2 : 1;
+      if (count < degree)
+      {
+        // Not enough neighbours, so this can never be solved.
+        sat.addClause();
+        return;
+      }
+      // At most: no degree + 1 edges are all used. At least: no count - degree + 1 edges are all unused.
+      addSubsets(edges, count, degree + 1, -1);
+      addSubsets(edges, count, count - degree + 1, 1);
+    }
+  }
+
+  /**
+   * Adds a clause for every subset of a size of some edges, made of the edges of the subset with a sign.
+   *
+   * @param edges The edge variables.
+   * @param count How many of {@code edges} to use.
+   * @param size  The size of the subsets. There are none if it is more than {@code count}.
+   * @param sign  {@code 1} for clauses of the edges, or {@code -1} for clauses of their negations.
+   */
+  private void addSubsets(int[] edges, int count, int size, int sign)
+  {
+    if (size > count || size <= 0)
+      return;
+    int[] chosen = new int[size];
+    for (int i = 0; i < size; i++)
+      chosen[i] = i;
+    int[] clause = new int[size];
+    while (true)
+    {
+      for (int i = 0; i < size; i++)
+        clause[i] = sign * edges[chosen[i]];
+      sat.addClause(clause);
+
+      // Move on to the next subset, in lexicographic order.
+      int i = size - 1;
+      while (i >= 0 && chosen[i] == count - size + i)
+        i--;
+      if (i < 0)
+        return;
+      chosen[i]++;
+      for (int j = i + 1; j < size; j++)
+        chosen[j] = chosen[j - 1] + 1;
+    }
+  }
+
+  /**
+   * Adds the clauses that make at most one of some literals true.
+   *
+   * @param literals The literals.
+   */
+  private void atMostOne(int[] literals)
+  {
+    int n = literals.length;
+    if (n <= PAIRWISE_LIMIT)
+    {
+      for (int i = 0; i < n; i++)
+        for (int j = i + 1; j < n; j++)
+          sat.addClause(-literals[i], -literals[j]);
+      return;
+    }
+    // Sequential counter: seen[i] is true if any of the first i + 1 literals is.
+    int previous = sat.newVariable();
+    sat.addClause(-literals[0], previous);
+    for (int i = 1; i < n - 1; i++)
+    {
+      int seen = sat.newVariable();
+      sat.addClause(-literals[i], seen);
+      sat.addClause(-previous, seen);
+      sat.addClause(-literals[i], -previous);
+      previous = seen;
+    }
+    sat.addClause(-literals[n - 1], -previous);
+  }
+
+  /**
+   * Follows the used edges of the model from a color's origin to its target, drawing the flow into a {@link SearchState}.
+   *
+   * @param c        The color.
+   * @param solution The {@link SearchState} to draw into.
+   * @param onFlow   Marks each cell the flow goes through.
+   */
+  private void traceFlow(int c, SearchState solution, boolean[] onFlow)
+  {
+    int previous = -1;
+    int cell = state.origins[c];
+    onFlow[cell] = true;
+    while (cell != state.targets[c])
+    {
+      int next = -1;
+      for (int d = 0; d < SearchState.DIRECTION_COUNT && next < 0; d++)
+      {
+        int neighbour = state.neighbours[cell * SearchState.DIRECTION_COUNT + d];
+        if (neighbour >= 0 && neighbour != previous && sat.value(edgeVariables[cell * SearchState.DIRECTION_COUNT + d]))
+          next = neighbour;
+      }
+      solution.push(c, next);
+      onFlow[next] = true;
+      previous = cell;
+      cell = next;
+    }
+  }
+
+  /**
+   * Rules out every loop in the model: the cells that aren't on a flow are all on loops, as they each have two used edges.
+   * <p>
+   * The loops are all found before any clauses are added, as adding a clause throws away the model.
+   *
+   * @param onFlow Marks each cell that is on a flow. Changed to mark every cell.
+   * @return whether there were any loops.
+   */
+  private boolean blockLoops(boolean[] onFlow)
+  {
+    List<int[]> blocked = new ArrayList<>();
+    int[] clause = new int[state.volume];
+    for (int first = 0; first < state.volume; first++)
+      if (!onFlow[first])
+      {
+        int length = 0;
+        int previous = -1;
+        int cell = first;
+        do
+        {
+          onFlow[cell] = true;
+          int next = -1;
+          for (int d = 0; d < SearchState.DIRECTION_COUNT && next < 0; d++)
+          {
+            int neighbour = state.neighbours[cell * SearchState.DIRECTION_COUNT + d];
+            int edge = edgeVariables[cell * SearchState.DIRECTION_COUNT + d];
+            if (neighbour >= 0 && neighbour != previous && sat.value(edge))
+            {
+              next = neighbour;
+              clause[length++] = -edge;
+            }
+          }
+          previous = cell;
+          cell = next;
+        }
+        while (cell != first);
+        blocked.add(Arrays.copyOf(clause, length));
+      }
+    for (int[] loop : blocked)
+      sat.addClause(loop);
+    loops += blocked.size();
+    return !blocked.isEmpty();
+  }
+}
@@ -0,0 +1,839 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * class SatSolver
+ * <p>
+ * A small conflict-driven clause learning (CDCL) SAT solver, used by {@link SatLevelSolver}.
+ * <p>
+ * Variables are numbered from {@code 1}, and a literal is a variable ({@code v}) or its negation ({@code -v}), as in the DIMACS format.
+ * Internally a literal is {@code 2 * (v - 1)}, plus {@code 1} if it is negated.
+ * It has two watched literals per clause, learns a clause from the first unique implication point of each conflict, picks variables by their activity in recent conflicts (VSIDS),
+ * remembers the last value of each variable, and restarts on the Luby sequence.
+ * <p>
+ * Learnt clauses are kept with an activity, bumped whenever one is used to analyse a conflict. When there are too many, the less active half of them is deleted at the next restart,
+ * apart from ones of two literals, and the limit is raised a little.
+ * <p>
+ * Clauses can be added between calls of {@link SatSolver#solve()}, so a model can be ruled out and the solver asked again.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class SatSolver
+{
+  /**
+   * The value of a variable that hasn't been assigned.
+   */
+  private static final byte UNASSIGNED = 0;
+  /**
+   * The value of a variable that is true.
+   */
+  private static final byte TRUE = 1;
+  /**
+   * The value of a variable that is false.
+   */
+  private static final byte FALSE = -1;
+  /**
+   * How many conflicts the first restart waits for; later ones wait this times the Luby sequence.
+   */
+  private static final int RESTART_BASE = 100;
+  /**
+   * How much the activity of the variables in conflicts grows by each conflict, so that recent conflicts count for more.
+   */
+  private static final double ACTIVITY_DECAY = 1 / 0.95;
+  /**
+   * How much the activity of the learnt clauses in conflicts grows by each conflict.
+   */
+  private static final double CLAUSE_ACTIVITY_DECAY = 1 / 0.999;
+  /**
+   * The fewest learnt clauses that are kept before any are deleted.
+   */
+  private static final int MIN_LEARNT_LIMIT = 2000;
+  /**
+   * How much the number of learnt clauses kept grows by each time some are deleted.
+   */
+  private static final double LEARNT_LIMIT_GROWTH = 1.1;
+  /**
+   * How many decisions are made between checks of {@link SatSolver#deadline}.
+   */
+  private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+  /**
+   * How many variables there are.
+   */
+  private int variableCount;
+  /**
+   * Every clause, original and learnt, as internal literals. The first two of each are the ones being watched.
+   */
+  private int[][] clauses = new int[16][];
+  /**
+   * How many of {@link SatSolver#clauses} are used, including the ones of deleted clauses that are free again.
+   */
+  private int clauseCount;
+  /**
+   * Whether each clause was learnt, rather than added.
+   */
+  private boolean[] learnts = new boolean[16];
+  /**
+   * How often each learnt clause has been in recent conflicts.
+   */
+  private double[] clauseActivities = new double[16];
+  /**
+   * How much a learnt clause's activity goes up when it is in a conflict.
+   */
+  private double clauseActivityIncrement = 1;
+  /**
+   * How many learnt clauses there are.
+   */
+  private int learntCount;
+  /**
+   * How many learnt clauses there can be before some are deleted.
+   */
+  private double learntLimit;
+  /**
+   * The indexes of deleted clauses, to be used again.
+   */
+  private int[] freeClauses = new int[0];
+  /**
+   * How many of {@link SatSolver#freeClauses} are used.
+   */
+  private int freeCount;
+  /**
+   * The clauses watching each internal literal, that is, the ones to look at when that literal becomes false.
+   */
+  private int[][] watches = new int[0][];
+  /**
+   * How many entries of each of {@link SatSolver#watches} are used.
+   */
+  private int[] watchCounts = new int[0];
+
+  /**
+   * The value of each variable: {@link SatSolver#TRUE}, {@link SatSolver#FALSE} or {@link SatSolver#UNASSIGNED}. Indexed from {@code 0}.
+   */
+  private byte[] values = new byte[0];
+  /**
+   * The decision level each variable was assigned at.
+   */
+  private int[] levels = new int[0];
+  /**
+   * The clause that forced each variable's value, or {@code -1} if it was a decision.
+   */
+  private int[] reasons = new int[0];
+  /**
+   * The value each variable had last, which it is given again when it is next decided.
+   */
+  private boolean[] phases = new boolean[0];
+  /**
+   * How often each variable has been in recent conflicts.
+   */
+  private double[] activities = new double[0];
+  /**
+   * How much a variable's activity goes up when it is in a conflict.
+   */
+  private double activityIncrement = 1;
+  /**
+   * Marks variables while a conflict is analysed.
+   */
+  private boolean[] seen = new boolean[0];
+
+  /**
+   * The literals that are true, in the order they were assigned.
+   */
+  private int[] trail = new int[0];
+  /**
+   * How many of {@link SatSolver#trail} are used.
+   */
+  private int trailSize;
+  /**
+   * Where each decision level begins in {@link SatSolver#trail}.
+   */
+  private int[] levelStarts = new int[1];
+  /**
+   * The current decision level.
+   */
+  private int level;
+  /**
+   * How much of {@link SatSolver#trail} has been propagated.
+   */
+  private int propagated;
+
+  /**
+   * A heap of the unassigned variables (and maybe some assigned ones), with the most active on top.
+   */
+  private int[] heap = new int[0];
+  /**
+   * How many entries of {@link SatSolver#heap} are used.
+   */
+  private int heapSize;
+  /**
+   * Where each variable is in {@link SatSolver#heap}, or {@code -1}.
+   */
+  private int[] heapIndexes = new int[0];
+
+  /**
+   * Set once a clause has been added that can never be satisfied, after which every call of {@link SatSolver#solve()} is unsatisfiable.
+   */
+  private boolean unsatisfiable;
+  /**
+   * When set, {@link SatSolver#solve()} stops soon after. May be {@code null}.
+   */
+  private AtomicBoolean cancel;
+  /**
+   * The {@link System#nanoTime()} that {@link SatSolver#solve()} stops at. Only used if {@link SatSolver#hasDeadline} is set.
+   */
+  private long deadline;
+  /**
+   * Whether {@link SatSolver#solve()} stops at {@link SatSolver#deadline}.
+   */
+  private boolean hasDeadline;
+  /**
+   * How many decisions have been made.
+   */
+  private long decisions;
+  /**
+   * How many conflicts have been found.
+   */
+  private long conflicts;
+
+  /**
+   * Adds a new variable.
+   *
+   * @return the number of the variable, from {@code 1}.
+   */
+  public int newVariable()
+  {
+    int v = variableCount++;
+    if (v == values.length)
+    {
+      int length = Math.max(16, v * 2);
+      values = Arrays.copyOf(values, length);
+      levels = Arrays.copyOf(levels, length);
+      reasons = Arrays.copyOf(reasons, length);
+      phases = Arrays.copyOf(phases, length);
+      activities = Arrays.copyOf(activities, length);
+      seen = Arrays.copyOf(seen, length);
+      trail = Arrays.copyOf(trail, length);
+      heap = Arrays.copyOf(heap, length);
+      heapIndexes = Arrays.copyOf(heapIndexes, length);
+      levelStarts = Arrays.copyOf(levelStarts, length + 1);
+      watches = Arrays.copyOf(watches, length * 2);
+      watchCounts = Arrays.copyOf(watchCounts, length * 2);
+    }
+    watches[2 * v] = new int[4];
+    watches[2 * v + 1] = new int[4];
+    heapIndexes[v] = -1;
+    heapInsert(v);
+    return v + 1;
+  }
+
+  /**
+   * Gets how many variables there are.
+   *
+   * @return the number of variables.
+   */
+  public int getVariableCount()
+  {
+    return variableCount;
+  }
+
+  /**
+   * Adds a clause: at least one of its literals has to be true.
+   *
+   * @param literals The literals of the clause, as {@code v} or {@code -v}.
+   */
+  public void addClause(int... literals)
+  {
+    if (unsatisfiable)
+      return;
+    backtrack(0);
+
+    // Drop literals that are false for good, and the clause if one is already true for good.
+    int[] clause = new int[literals.length];
+    int length = 0;
+    for (int literal : literals)
+    {
+      int lit = toInternal(literal);
+      int value = valueOf(lit);
+      if (value == TRUE)
+        return;
+      if (value == FALSE)
+        continue;
+      boolean repeated = false;
+      for (int i = 0; i < length && !repeated; i++)
+      {
+        if (clause[i] == (lit ^ 1))
+          return;
+        repeated = clause[i] == lit;
+      }
+      if (!repeated)
+        clause[length++] = lit;
+    }
+
+    if (length == 0)
+      unsatisfiable = true;
+    else
+      if (length == 1)
+      {
+        assign(clause[0], -1);
+        if (propagate() >= 0)
+          unsatisfiable = true;
+      }
+      else
+        attach(Arrays.copyOf(clause, length), false);
+  }
+
+  /**
+   * Makes {@link SatSolver#solve()} stop soon after a flag is set.
+   *
+   * @param cancel The flag to watch, or {@code null} to never stop.
+   */
+  public void setCancel(AtomicBoolean cancel)
+  {
+    this.cancel = cancel;
+  }
+
+  /**
+   * Makes {@link SatSolver#solve()} stop soon after a time.
+   *
+   * @param deadline The {@link System#nanoTime()} to stop at.
+   */
+  public void setDeadline(long deadline)
+  {
+    this.deadline = deadline;
+    hasDeadline = true;
+  }
+
+  /**
+   * Looks for values of the variables that satisfy every clause.
+   *
+   * @return {@link Boolean#TRUE} if there are some (see {@link SatSolver#value(int)}), {@link Boolean#FALSE} if there are none, or {@code null} if it was cancelled or ran out of time.
+   */
+  public Boolean solve()
+  {
+    if (unsatisfiable)
+      return Boolean.FALSE;
+    backtrack(0);
+    if (propagate() >= 0)
+    {
+      unsatisfiable = true;
+      return Boolean.FALSE;
+    }
+
+    learntLimit = Math.max(learntLimit, Math.max(MIN_LEARNT_LIMIT, (clauseCount - freeCount - learntCount) / 3.0));
+    int[] learnt = new int[Math.max(1, variableCount)];
+    for (int restart = 1; ; restart++)
+    {
+      long limit = (long) RESTART_BASE * luby(restart);
+      for (long restartConflicts = 0; ; )
+      {
+        int conflict = propagate();
+        if (conflict >= 0)
+        {
+          conflicts++;
+          restartConflicts++;
+          if (level == 0)
+          {
+            unsatisfiable = true;
+            return Boolean.FALSE;
+          }
+          int length = analyse(conflict, learnt);
+          int backtrackLevel = 0;
+          for (int i = 1; i < length; i++)
+            backtrackLevel = Math.max(backtrackLevel, levels[learnt[i] >> 1]);
+          backtrack(backtrackLevel);
+          if (length == 1)
+            assign(learnt[0], -1);
+          else
+          {
+            // Watch the asserting literal and the one from the highest level below it.
+            for (int i = 2; i < length; i++)
+              if (levels[learnt[i] >> 1] > levels[learnt[1] >> 1])
+              {
+                int swap = learnt[1];
+                learnt[1] = learnt[i];
+                learnt[i] = swap;
+              }
+            int clause = attach(Arrays.copyOf(learnt, length), true);
+            assign(learnt[0], clause);
+          }
+          activityIncrement *= ACTIVITY_DECAY;
+          clauseActivityIncrement *= CLAUSE_ACTIVITY_DECAY;
+          continue;
+        }
+
+        if (cancel != null && cancel.get() || hasDeadline && decisions % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0)
+        {
+          backtrack(0);
+          return null;
+        }
+        if (restartConflicts >= limit)
+        {
+          backtrack(0);
+          if (learntCount >= learntLimit)
+            reduceLearnts();
+          break;
+        }
+        int variable = pickBranch();
+        if (variable < 0)
+          return Boolean.TRUE;
+        decisions++;
+        levelStarts[++level] = trailSize;
+        assign(2 * variable + (phases[variable] ? 0 : 1), -1);
+      }
+    }
+  }
+
+  /**
+   * Gets the value of a variable in the model found by the last call of {@link SatSolver#solve()} that returned {@link Boolean#TRUE}.
+   *
+   * @param variable The number of the variable, from {@code 1}.
+   * @return whether the variable is true.
+   */
+  public boolean value(int variable)
+  {
+    return values[variable - 1] == TRUE;
+  }
+
+  /**
+   * Gets how many decisions have been made over every call of {@link SatSolver#solve()}.
+   *
+   * @return the number of decisions.
+   */
+  public long getDecisions()
+  {
+    return decisions;
+  }
+
+  /**
+   * Gets how many conflicts have been found over every call of {@link SatSolver#solve()}.
+   *
+   * @return the number of conflicts.
+   */
+  public long getConflicts()
+  {
+    return conflicts;
+  }
+
+  /**
+   * Turns a DIMACS literal into an internal one.
+   *
+   * @param literal The literal, as {@code v} or {@code -v}.
+   * @return the internal literal.
+   */
+  private int toInternal(int literal)
+  {
+    int v = Math.abs(literal) - 1;
+    if (literal == 0 || v >= variableCount)
+      throw new IllegalArgumentException(literal + " is not a literal of a variable that exists!");
+    return 2 * v + (literal < 0 ? 1 : 0);
+  }
+
+  /**
+   * Gets the value of an internal literal.
+   *
+   * @param lit The internal literal.
+   * @return {@link SatSolver#TRUE}, {@link SatSolver#FALSE} or {@link SatSolver#UNASSIGNED}.
+   */
+  private int valueOf(int lit)
+  {
+    int value = values[lit >> 1];
+    return (lit & 1) == 0 ? value : -value;
+  }
+
+  /**
+   * Makes an internal literal true.
+   *
+   * @param lit    The internal literal.
+   * @param reason The clause that forced it, or {@code -1} if it was decided.
+   */
+  private void assign(int lit, int reason)
+  {
+    int v = lit >> 1;
+    values[v] = (lit & 1) == 0 ? TRUE : FALSE;
+    levels[v] = level;
+    reasons[v] = reason;
+    trail[trailSize++] = lit;
+  }
+
+  /**
+   * Adds a clause of at least two internal literals, and watches its first two.
+   *
+   * @param clause The clause.
+   * @param learnt Whether the clause was learnt, so that it may be deleted later.
+   * @return the index of the clause.
+   */
+  private int attach(int[] clause, boolean learnt)
+  {
+    int index;
+    if (freeCount > 0)
+      index = freeClauses[--freeCount];
+    else
+    {
+      if (clauseCount == clauses.length)
+      {
+        clauses = Arrays.copyOf(clauses, clauseCount * 2);
+        learnts = Arrays.copyOf(learnts, clauseCount * 2);
+        clauseActivities = Arrays.copyOf(clauseActivities, clauseCount * 2);
+      }
+      index = clauseCount++;
+    }
+    clauses[index] = clause;
+    learnts[index] = learnt;
+    clauseActivities[index] = 0;
+    if (learnt)
+      learntCount++;
+    watch(clause[0], index);
+    watch(clause[1], index);
+    return index;
+  }
+
+  /**
+   * Deletes a learnt clause, and frees its index to be used again.
+   * Only called at decision level {@code 0}, where no clause is the reason for anything that a conflict can be analysed back to.
+   *
+   * @param index The index of the clause.
+   */
+  private void detach(int index)
+  {
+    int[] clause = clauses[index];
+    unwatch(clause[0], index);
+    unwatch(clause[1], index);
+    clauses[index] = null;
+    learnts[index] = false;
+    learntCount--;
+    if (freeCount == freeClauses.length)
+      freeClauses = Arrays.copyOf(freeClauses, Math.max(16, freeCount * 2));
+    freeClauses[freeCount++] = index;
+  }
+
+  /**
+   * Deletes the less active half of the learnt clauses of more than two literals, and raises {@link SatSolver#learntLimit}.
+   */
+  private void reduceLearnts()
+  {
+    int[] candidates = new int[learntCount];
+    int count = 0;
+    for (int i = 0; i < clauseCount; i++)
+      if (learnts[i] && clauses[i].length > 2)
+        candidates[count++] = i;
+    if (count > 0)
+    {
+      double[] sorted = new double[count];
+      for (int i = 0; i < count; i++)
+        sorted[i] = clauseActivities[candidates[i]];
+      Arrays.sort(sorted);
+      double median = sorted[count / 2];
+      int deleted = 0;
+      for (int i = 0; i < count && deleted < count / 2; i++)
+        if (clauseActivities[candidates[i]] <= median)
+        {
+          detach(candidates[i]);
+          deleted++;
+        }
+    }
+    learntLimit *= LEARNT_LIMIT_GROWTH;
+  }
+
+  /**
+   * Adds a clause to the watches of an internal literal.
+   *
+   * @param lit    The internal literal.
+   * @param clause The index of the clause.
+   */
+  private void watch(int lit, int clause)
+  {
+    if (watchCounts[lit] == watches[lit].length)
+      watches[lit] = Arrays.copyOf(watches[lit], watchCounts[lit] * 2);
+    watches[lit][watchCounts[lit]++] = clause;
+  }
+
+  /**
+   * Removes a clause from the watches of an internal literal.
+   *
+   * @param lit    The internal literal.
+   * @param clause The index of the clause.
+   */
+  private void unwatch(int lit, int clause)
+  {
+    int[] list = watches[lit];
+    int count = watchCounts[lit];
+    for (int i = 0; i < count; i++)
+      if (list[i] == clause)
+      {
+        list[i] = list[--count];
+        watchCounts[lit] = count;
+        return;
+      }
+  }
+
+  /**
+   * Assigns every literal forced by the ones on the trail.
+   *
+   * @return the index of a clause that has become false, or {@code -1} if there is none.
+   */
+  private int propagate()
+  {
+    while (propagated < trailSize)
+    {
+      int falseLit = trail[propagated++] ^ 1;
+      int[] list = watches[falseLit];
+      int count = watchCounts[falseLit];
+      int kept = 0;
+      for (int i = 0; i < count; i++)
+      {
+        int index = list[i];
+        int[] clause = clauses[index];
+        if (clause[0] == falseLit)
+        {
+          clause[0] = clause[1];
+          clause[1] = falseLit;
+        }
+        if (valueOf(clause[0]) == TRUE)
+        {
+          list[kept++] = index;
+          continue;
+        }
+
+        // Look for something else to watch.
+        boolean moved = false;
+        for (int k = 2; k < clause.length && !moved; k++)
+          if (valueOf(clause[k]) != FALSE)
+          {
+            clause[1] = clause[k];
+            clause[k] = falseLit;
+            watch(clause[1], index);
+            moved = true;
+          }
+        if (moved)
+          continue;
+
+        list[kept++] = index;
+        if (valueOf(clause[0]) == FALSE)
+        {
+          // Keep the rest of the watches, and stop.
+          while (++i < count)
+            list[kept++] = list[i];
+          watchCounts[falseLit] = kept;
+          propagated = trailSize;
+          return index;
+        }
+        assign(clause[0], index);
+      }
+      watchCounts[falseLit] = kept;
+    }
+    return -1;
+  }
+
+  /**
+   * Works out a clause to learn from a conflict, cutting at the first unique implication point.
+   *
+   * @param conflict The index of the clause that became false.
+   * @param learnt   Where to put the learnt clause. Its first literal is the one that becomes true after backtracking.
+   * @return how many literals the learnt clause has.
+   */
+  private int analyse(int conflict, int[] learnt)
+  {
+    int length = 1;
+    int paths = 0;
+    int lit = -1;
+    int index = trailSize - 1;
+    int clause = conflict;
+    do
+    {
+      if (learnts[clause])
+        bumpClause(clause);
+      int[] literals = clauses[clause];
+      for (int i = lit < 0 ? 0 : 1; i < literals.length; i++)
+      {
+        int v = literals[i] >> 1;
+        if (!seen[v] && levels[v] > 0)
+        {
+          seen[v] = true;
+          bump(v);
+          if (levels[v] == level)
+            paths++;
+          else
+            learnt[length++] = literals[i];
+        }
+      }
+      while (!seen[trail[index] >> 1])
+        index--;
+      lit = trail[index--];
+      clause = reasons[lit >> 1];
+      seen[lit >> 1] = false;
+      paths--;
+    }
+    while (paths > 0);
+    learnt[0] = lit ^ 1;
+    for (int i = 1; i < length; i++)
+      seen[learnt[i] >> 1] = false;
+    return length;
+  }
+
+  /**
+   * Undoes every assignment made above a decision level.
+   *
+   * @param target The decision level to go back to.
+   */
+  private void backtrack(int target)
+  {
+    if (level <= target)
+      return;
+    for (int i = trailSize - 1; i >= levelStarts[target + 1]; i--)
+    {
+      int v = trail[i] >> 1;
+      phases[v] = values[v] == TRUE;
+      values[v] = UNASSIGNED;
+      if (heapIndexes[v] < 0)
+        heapInsert(v);
+    }
+    trailSize = levelStarts[target + 1];
+    propagated = trailSize;
+    level = target;
+  }
+
+  /**
+   * Picks the most active unassigned variable to decide next.
+   *
+   * @return the variable, from {@code 0}, or {@code -1} if every variable has been assigned.
+   */
+  private int pickBranch()
+  {
+    while (heapSize > 0)
+    {
+      int v = heapRemoveTop();
+      if (values[v] == UNASSIGNED)
+        return v;
+    }
+    return -1;
+  }
+
+  /**
+   * Raises the activity of a variable that was in a conflict.
+   *
+   * @param v The variable, from {@code 0}.
+   */
+  private void bump(int v)
+  {
+    activities[v] += activityIncrement;
+    if (activities[v] > 1e100)
+    {
+      // Scale everything down before it overflows.
+      for (int i = 0; i < variableCount; i++)
+        activities[i] *= 1e-100;
+      activityIncrement *= 1e-100;
+    }
+    if (heapIndexes[v] >= 0)
+      heapUp(heapIndexes[v]);
+  }
+
+  /**
+   * Raises the activity of a learnt clause that was in a conflict.
+   *
+   * @param clause The index of the clause.
+   */
+  private void bumpClause(int clause)
+  {
+    clauseActivities[clause] += clauseActivityIncrement;
+    if (clauseActivities[clause] > 1e20)
+    {
+      // Scale everything down before it overflows.
+      for (int i = 0; i < clauseCount; i++)
+        clauseActivities[i] *= 1e-20;
+      clauseActivityIncrement *= 1e-20;
+    }
+  }
+
+  /**
+   * Gets an entry of the Luby sequence: 1, 1, 2, 1, 1, 2, 4, 1, ...
+   *
+   * @param i The position in the sequence, from {@code 1}.
+   * @return the entry.
+   */
+  private static long luby(int i)
+  {
+    int k = 1;
+    while ((1L << k) - 1 < i)
+      k++;
+    while (i != (1L << k) - 1)
+    {
+      i -= (int) (1L << (k - 1)) - 1;
+      k = 1;
+      while ((1L << k) - 1 < i)
+        k++;
+    }
+    return 1L << (k - 1);
+  }
+
+  /**
+   * Adds a variable to {@link SatSolver#heap}.
+   *
+   * @param v The variable, from {@code 0}.
+   */
+  private void heapInsert(int v)
+  {
+    heap[heapSize] = v;
+    heapIndexes[v] = heapSize;
+    heapUp(heapSize++);
+  }
+
+  /**
+   * Takes the most active variable off of {@link SatSolver#heap}.
+   *
+   * @return the variable, from {@code 0}.
+   */
+  private int heapRemoveTop()
+  {
+    int top = heap[0];
+    heapIndexes[top] = -1;
+    heapSize--;
+    if (heapSize > 0)
+    {
+      heap[0] = heap[heapSize];
+      heapIndexes[heap[0]] = 0;
+      heapDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Moves an entry of {@link SatSolver#heap} up until its parent is at least as active.
+   *
+   * @param i The position of the entry.
+   */
+  private void heapUp(int i)
+  {
+    int v = heap[i];
+    while (i > 0 && activities[heap[(i - 1) / 2]] < activities[v])
+    {
+      heap[i] = heap[(i - 1) / 2];
+      heapIndexes[heap[i]] = i;
+      i = (i - 1) / 2;
+    }
+    heap[i] = v;
+    heapIndexes[v] = i;
+  }
+
+  /**
+   * Moves an entry of {@link SatSolver#heap} down until its children are no more active.
+   *
+   * @param i The position of the entry.
+   */
+  private void heapDown(int i)
+  {
+    int v = heap[i];
+    while (2 * i + 1 < heapSize)
+    {
+      int child = 2 * i + 1;
+      if (child + 1 < heapSize && activities[heap[child + 1]] > activities[heap[child]])
+        child++;
+      if (activities[heap[child]] <= activities[v])
+        break;
+      heap[i] = heap[child];
+      heapIndexes[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = v;
+    heapIndexes[v] = i;
+  }
+}
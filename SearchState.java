@@ -0,0 +1,515 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * class SearchState
+ * <p>
+ * The state of a search for a solution to a {@link Level}, kept in arrays of primitives so that searching creates no objects.
+ * <p>
+ * Each color is drawn from one of its {@link PathType#START}s (its origin) towards the other (its target), one cell at a time.
+ * Moves are pushed onto a stack by {@link SearchState#push(int, int)} and taken back in reverse order by {@link SearchState#pop()}.
+ * Colors are numbered from {@code 0} to {@link SearchState#colorCount}, in order of {@link PathColor#getId()}, skipping the colors that aren't in the {@link Level}.
+ * <p>
+ * A Zobrist hash of the state is kept up to date by every move (see {@link SearchState#hash}), for looking states up in a {@link TranspositionTable}.
+ * <p>
+ * So is a count of dead ends (see {@link SearchState#deadEnds}): empty cells that can no longer be filled, as fewer than two of their neighbours could ever join onto them.
+ * Each move only changes the counts of the cells around the heads it moves, so checking for dead ends takes no time at all. See {@link Connectivity} for the checks that look at the whole board.
+ *
+ * @author Stanley S.
+ * @version 1.5
+ */
+class SearchState
+{
+  /**
+   * The value of an empty cell in {@link SearchState#cells}.
+   */
+  static final int EMPTY = -1;
+  /**
+   * How many neighbours each cell has room for in {@link SearchState#neighbours}.
+   */
+  static final int DIRECTION_COUNT = PathDirection.DIRECTIONS.length;
+  /**
+   * Added to a color to get the value a {@link PathType#START} of that color is hashed with in {@link SearchState#hash}, so that it doesn't hash like a filled cell.
+   */
+  private static final int START_KEY = 1 << 16;
+
+  /**
+   * The side length of the {@link Level}.
+   */
+  final int size;
+  /**
+   * How many cells the {@link Level} has.
+   */
+  final int volume;
+  /**
+   * The neighbours of each cell, at {@code index * DIRECTION_COUNT + d} for the {@code d}th of {@link PathDirection#DIRECTIONS}, or {@code -1} where a cell has no neighbour that way.
+   */
+  final int[] neighbours;
+  /**
+   * How far each cell is along the X, Y and Z axes.
+   */
+  final int[] xs, ys, zs;
+  /**
+   * How many colors are being drawn.
+   */
+  final int colorCount;
+  /**
+   * The {@link PathColor} of each color being drawn.
+   */
+  final PathColor[] colors;
+
+  /**
+   * The color of each cell, or {@link SearchState#EMPTY}.
+   */
+  final int[] cells;
+  /**
+   * The {@link PathType#START} each color is drawn from.
+   */
+  final int[] origins;
+  /**
+   * The {@link PathType#START} each color is drawn to.
+   */
+  final int[] targets;
+  /**
+   * The last cell drawn of each color, where it carries on from.
+   */
+  final int[] heads;
+  /**
+   * Whether each color has reached its target.
+   */
+  final boolean[] connected;
+  /**
+   * How many colors haven't reached their target.
+   */
+  int unconnected;
+  /**
+   * How many cells aren't empty.
+   */
+  int filled;
+  /**
+   * The Zobrist hash of the state: the {@link Zobrist#key(int, int)} of each filled cell with its color plus {@code 1}, of each head with minus its color minus {@code 1},
+   * and of each {@link PathType#START} and the size, so that states of different {@link Level}s don't hash the same.
+   * <p>
+   * Everything still to be searched from a state depends only on which cells are filled by which color and where the heads are, so states with the same hash can be searched once.
+   * The hash doesn't depend on which {@link PathColor}s are used, only on how many, so it can be shared between {@link Level}s that are the same but for their colors.
+   */
+  long hash;
+  /**
+   * How many neighbours of each cell are open: empty, or the head or target of a color that hasn't reached its target. Kept for every cell, not just the empty ones.
+   */
+  final int[] support;
+  /**
+   * How many empty cells have fewer than two open neighbours (see {@link SearchState#support}). A flow can't pass through such a cell, so a state with any can't lead to a solution.
+   */
+  int deadEnds;
+
+  /**
+   * The color moved by each move on the stack.
+   */
+  final int[] moveColors;
+  /**
+   * The cell moved into by each move on the stack.
+   */
+  final int[] moveCells;
+  /**
+   * Where the head of the color was before each move on the stack.
+   */
+  final int[] movePreviousHeads;
+  /**
+   * How many moves are on the stack.
+   */
+  int depth;
+
+  /**
+   * Constructor for SearchState
+   * <p>
+   * Creates the starting state of a search for a solution to a {@link Level}. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   *
+   * @param puzzle The {@link Level} to solve.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  SearchState(Level puzzle)
+  {
+    this(puzzle, false);
+  }
+
+  /**
+   * Creates the state of a {@link Level}, with or without the flows that are drawn in it.
+   * <p>
+   * A drawn flow is taken as the moves of its color, from the {@link PathType#START} it is drawn from, for as long as they are moves that could have been made.
+   *
+   * @param puzzle    The {@link Level}.
+   * @param withFlows Whether to make the moves of the flows drawn in the {@link Level}, or only use its {@link PathType#START}s.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  SearchState(Level puzzle, boolean withFlows)
+  {
+    size = puzzle.size();
+    volume = size * size * size;
+    neighbours = new int[volume * DIRECTION_COUNT];
+    xs = new int[volume];
+    ys = new int[volume];
+    zs = new int[volume];
+    cells = new int[volume];
+    Arrays.fill(cells, EMPTY);
+
+    // Find the starts of each color.
+    int[] firstStart = new int[PathColor.MAX_COUNT];
+    int[] secondStart = new int[PathColor.MAX_COUNT];
+    int[] startCounts = new int[PathColor.MAX_COUNT];
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+        {
+          int index = puzzle.indexOf(x, y, z);
+          xs[index] = x;
+          ys[index] = y;
+          zs[index] = z;
+          for (int d = 0; d < DIRECTION_COUNT; d++)
+            neighbours[index * DIRECTION_COUNT + d] = puzzle.neighbourIndex(x, y, z, PathDirection.DIRECTIONS[d]);
+
+          Path path = puzzle.getPath(x, y, z);
+          if (path != null && path.getType() == PathType.START)
+          {
+            int id = path.getColor().getId();
+            if (startCounts[id] == 0)
+              firstStart[id] = index;
+            else
+              secondStart[id] = index;
+            startCounts[id]++;
+          }
+        }
+
+    int count = 0;
+    for (int id = 0; id < PathColor.MAX_COUNT; id++)
+      if (startCounts[id] != 0)
+      {
+        if (startCounts[id] != 2)
+          throw new IllegalArgumentException(PathColor.get(id) + " has " + startCounts[id] + " starts, but a flow needs exactly two!");
+        count++;
+      }
+    colorCount = count;
+    colors = new PathColor[count];
+    origins = new int[count];
+    targets = new int[count];
+    heads = new int[count];
+    connected = new boolean[count];
+    int[][] flows = new int[count][];
+    int c = 0;
+    for (int id = 0; id < PathColor.MAX_COUNT; id++)
+      if (startCounts[id] != 0)
+      {
+        colors[c] = PathColor.get(id);
+        origins[c] = heads[c] = firstStart[id];
+        targets[c] = secondStart[id];
+        if (withFlows)
+        {
+          flows[c] = flowOf(puzzle, colors[c]);
+          if (flows[c].length > 0 && flows[c][0] == targets[c])
+          {
+            // Draw from whichever end the flow was drawn from.
+            origins[c] = heads[c] = secondStart[id];
+            targets[c] = firstStart[id];
+          }
+        }
+        cells[origins[c]] = c;
+        cells[targets[c]] = c;
+        hash ^= Zobrist.key(origins[c], START_KEY + c) ^ Zobrist.key(targets[c], START_KEY + c) ^ Zobrist.key(origins[c], -c - 1);
+        c++;
+      }
+    hash ^= Zobrist.key(-1, size);
+    unconnected = count;
+    filled = 2 * count;
+    moveColors = new int[volume];
+    moveCells = new int[volume];
+    movePreviousHeads = new int[volume];
+
+    support = new int[volume];
+    for (int cell = 0; cell < volume; cell++)
+    {
+      for (int d = 0; d < DIRECTION_COUNT; d++)
+      {
+        int neighbour = neighbours[cell * DIRECTION_COUNT + d];
+        if (neighbour >= 0 && isOpenEnd(neighbour))
+          support[cell]++;
+      }
+      if (cells[cell] == EMPTY && support[cell] < 2)
+        deadEnds++;
+    }
+
+    if (withFlows)
+      for (c = 0; c < count; c++)
+        for (int i = 1; i < flows[c].length && !connected[c] && isNeighbour(heads[c], flows[c][i]) && isOpen(c, flows[c][i]); i++)
+          push(c, flows[c][i]);
+  }
+
+  /**
+   * Gets the cells of the flow drawn for a color in a {@link Level}.
+   *
+   * @param puzzle The {@link Level}.
+   * @param color  The color of the flow.
+   * @return the index of each cell of the flow, in order. Empty if there is none.
+   */
+  private static int[] flowOf(Level puzzle, PathColor color)
+  {
+    LinkedList<Point3I> path = puzzle.getFlowPath(color);
+    if (path == null)
+      return new int[0];
+    int[] flow = new int[path.size()];
+    int i = 0;
+    for (Point3I location : path)
+      flow[i++] = puzzle.indexOf(location.getX(), location.getY(), location.getZ());
+    return flow;
+  }
+
+  /**
+   * Checks if two cells are next to each other.
+   *
+   * @param a The first cell.
+   * @param b The second cell.
+   * @return whether {@code b} is one of the neighbours of {@code a}.
+   */
+  private boolean isNeighbour(int a, int b)
+  {
+    for (int d = 0; d < DIRECTION_COUNT; d++)
+      if (neighbours[a * DIRECTION_COUNT + d] == b)
+        return true;
+    return false;
+  }
+
+  /**
+   * Gets the location of a cell.
+   *
+   * @param cell The index of the cell.
+   * @return the location of the cell in the {@link Level}.
+   */
+  Point3I locationOf(int cell)
+  {
+    return new Point3I(xs[cell], ys[cell], zs[cell]);
+  }
+
+  /**
+   * Creates a copy of another {@code SearchState}, sharing the parts that never change.
+   *
+   * @param other The {@code SearchState} to copy.
+   */
+  SearchState(SearchState other)
+  {
+    size = other.size;
+    volume = other.volume;
+    neighbours = other.neighbours;
+    xs = other.xs;
+    ys = other.ys;
+    zs = other.zs;
+    colorCount = other.colorCount;
+    colors = other.colors;
+    origins = other.origins;
+    targets = other.targets;
+    cells = other.cells.clone();
+    heads = other.heads.clone();
+    connected = other.connected.clone();
+    unconnected = other.unconnected;
+    filled = other.filled;
+    hash = other.hash;
+    support = other.support.clone();
+    deadEnds = other.deadEnds;
+    moveColors = other.moveColors.clone();
+    moveCells = other.moveCells.clone();
+    movePreviousHeads = other.movePreviousHeads.clone();
+    depth = other.depth;
+  }
+
+  /**
+   * Checks if a color could move into a cell next to its head: the cell is either empty or its target.
+   *
+   * @param c    The color.
+   * @param cell The cell.
+   * @return whether the cell is open to that color.
+   */
+  boolean isOpen(int c, int cell)
+  {
+    return cells[cell] == EMPTY || cell == targets[c];
+  }
+
+  /**
+   * Checks if a cell is open, as counted by {@link SearchState#support}: empty, or the head or target of a color that hasn't reached its target.
+   *
+   * @param cell The cell.
+   * @return whether the cell is open.
+   */
+  boolean isOpenEnd(int cell)
+  {
+    int c = cells[cell];
+    return c == EMPTY || !connected[c] && (heads[c] == cell || targets[c] == cell);
+  }
+
+  /**
+   * Draws a color one cell further, from its head into a neighbouring cell that is open to it (see {@link SearchState#isOpen(int, int)}).
+   *
+   * @param c    The color to move.
+   * @param cell The cell to move into.
+   */
+  void push(int c, int cell)
+  {
+    int head = heads[c];
+    moveColors[depth] = c;
+    moveCells[depth] = cell;
+    movePreviousHeads[depth] = head;
+    depth++;
+    if (cell == targets[c])
+    {
+      connected[c] = true;
+      unconnected--;
+      // Neither end is open anymore.
+      removeSupport(head);
+      removeSupport(cell);
+    }
+    else
+    {
+      // The cell goes from empty to a head, which is open either way, so only the old head closes.
+      if (support[cell] < 2)
+        deadEnds--;
+      cells[cell] = c;
+      filled++;
+      hash ^= Zobrist.key(cell, c + 1);
+      removeSupport(head);
+    }
+    hash ^= Zobrist.key(heads[c], -c - 1) ^ Zobrist.key(cell, -c - 1);
+    heads[c] = cell;
+  }
+
+  /**
+   * Takes back the last move pushed.
+   */
+  void pop()
+  {
+    depth--;
+    int c = moveColors[depth];
+    int cell = moveCells[depth];
+    int head = movePreviousHeads[depth];
+    if (cell == targets[c])
+    {
+      connected[c] = false;
+      unconnected++;
+      addSupport(head);
+      addSupport(cell);
+    }
+    else
+    {
+      addSupport(head);
+      cells[cell] = EMPTY;
+      filled--;
+      hash ^= Zobrist.key(cell, c + 1);
+      if (support[cell] < 2)
+        deadEnds++;
+    }
+    hash ^= Zobrist.key(cell, -c - 1) ^ Zobrist.key(movePreviousHeads[depth], -c - 1);
+    heads[c] = movePreviousHeads[depth];
+  }
+
+  /**
+   * Takes one from the {@link SearchState#support} of each neighbour of a cell that has stopped being open, counting the empty ones that become dead ends.
+   *
+   * @param cell The cell that has stopped being open.
+   */
+  private void removeSupport(int cell)
+  {
+    for (int d = 0; d < DIRECTION_COUNT; d++)
+    {
+      int neighbour = neighbours[cell * DIRECTION_COUNT + d];
+      if (neighbour >= 0 && --support[neighbour] == 1 && cells[neighbour] == EMPTY)
+        deadEnds++;
+    }
+  }
+
+  /**
+   * Adds one to the {@link SearchState#support} of each neighbour of a cell that has become open again, counting the empty ones that stop being dead ends.
+   *
+   * @param cell The cell that has become open.
+   */
+  private void addSupport(int cell)
+  {
+    for (int d = 0; d < DIRECTION_COUNT; d++)
+    {
+      int neighbour = neighbours[cell * DIRECTION_COUNT + d];
+      if (neighbour >= 0 && ++support[neighbour] == 2 && cells[neighbour] == EMPTY)
+        deadEnds--;
+    }
+  }
+
+  /**
+   * Gets how close this state is to a solution, for comparing partial solutions: flows that reach their target count first, then filled cells.
+   *
+   * @return a score that is higher for a state with more flows connected, or as many flows connected and more cells filled.
+   */
+  long progress()
+  {
+    return (long) (colorCount - unconnected) * (volume + 1) + filled;
+  }
+
+  /**
+   * Checks if every color has reached its target and every cell is filled.
+   *
+   * @return whether this is a solution.
+   */
+  boolean isSolved()
+  {
+    return unconnected == 0 && filled == volume;
+  }
+
+  /**
+   * Gets the number of steps between two cells, ignoring what is in the way.
+   *
+   * @param a The first cell.
+   * @param b The second cell.
+   * @return the Manhattan distance between the cells.
+   */
+  int distance(int a, int b)
+  {
+    return Math.abs(xs[a] - xs[b]) + Math.abs(ys[a] - ys[b]) + Math.abs(zs[a] - zs[b]);
+  }
+
+  /**
+   * Makes a {@link Level} with every flow drawn as far as this state has drawn it, with directions set.
+   *
+   * @return the new {@link Level}.
+   */
+  Level toLevel()
+  {
+    return toLevel(depth, moveColors, moveCells);
+  }
+
+  /**
+   * Makes a {@link Level} with the flows of some moves drawn on the {@link PathType#START}s of this state, with directions set.
+   * <p>
+   * The moves can be a copy of an earlier state's, so that a state can be kept without making its {@link Level} until it is needed.
+   *
+   * @param depth      How many moves there are.
+   * @param moveColors The color of each move.
+   * @param moveCells  The cell of each move.
+   * @return the new {@link Level}.
+   */
+  Level toLevel(int depth, int[] moveColors, int[] moveCells)
+  {
+    Cube cube = new Cube(size);
+    for (int c = 0; c < colorCount; c++)
+    {
+      cube.setCell(origins[c], Cube.encode(PathType.START, colors[c], null));
+      cube.setCell(targets[c], Cube.encode(PathType.START, colors[c], null));
+    }
+    Level level = new Level(cube);
+
+    int[] flow = new int[volume];
+    for (int c = 0; c < colorCount; c++)
+    {
+      int length = 0;
+      flow[length++] = origins[c];
+      for (int i = 0; i < depth; i++)
+        if (moveColors[i] == c)
+          flow[length++] = moveCells[i];
+      level.setFlow(flow, length);
+    }
+    level.clearHistory();
+    return level;
+  }
+}
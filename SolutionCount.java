@@ -0,0 +1,146 @@
+import java.util.List;
+
+/**
+ * class SolutionCount
+ * <p>
+ * How many solutions a {@link Level} has, up to a limit, with a certificate for the answer. See {@link ParallelSolver#countSolutions(Level, int)}.
+ * <p>
+ * If the limit was reached, the solutions that were found are the certificate: they are all different, so there are at least that many.
+ * If it wasn't, the search tried every move, and the number of moves it tried is the certificate that there are no more.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public class SolutionCount
+{
+  /**
+   * The most solutions that were looked for.
+   */
+  private final int limit;
+  /**
+   * The solutions that were found, at most {@link SolutionCount#limit}.
+   */
+  private final List<Level> solutions;
+  /**
+   * How many moves were tried.
+   */
+  private final long nodes;
+  /**
+   * How long the count took, in nanoseconds.
+   */
+  private final long nanos;
+
+  /**
+   * Constructor for SolutionCount
+   * <p>
+   * Creates a {@code SolutionCount} from the result of a search for up to {@code limit} solutions.
+   *
+   * @param limit  The most solutions that were looked for.
+   * @param result The result of the search.
+   */
+  public SolutionCount(int limit, SolverResult result)
+  {
+    this.limit = limit;
+    this.solutions = result.getSolutions();
+    this.nodes = result.getNodes();
+    this.nanos = result.getNanos();
+  }
+
+  /**
+   * Gets how many solutions were found. If this is {@link SolutionCount#getLimit()}, there may be more.
+   *
+   * @return the number of solutions found.
+   */
+  public int getCount()
+  {
+    return solutions.size();
+  }
+
+  /**
+   * Gets the most solutions that were looked for.
+   *
+   * @return the limit of the count.
+   */
+  public int getLimit()
+  {
+    return limit;
+  }
+
+  /**
+   * Checks if the search tried every move, so that {@link SolutionCount#getCount()} is exactly how many solutions there are.
+   *
+   * @return whether the count is exact.
+   */
+  public boolean isExhaustive()
+  {
+    return solutions.size() < limit;
+  }
+
+  /**
+   * Checks if the {@link Level} has exactly one solution. This needs a limit of at least 2 to ever be {@code true}.
+   *
+   * @return whether exactly one solution was found, and the search tried every move.
+   */
+  public boolean isUnique()
+  {
+    return solutions.size() == 1 && isExhaustive();
+  }
+
+  /**
+   * Gets the solutions that were found, in the order they were found.
+   *
+   * @return an unmodifiable list of the solved {@link Level}s.
+   */
+  public List<Level> getSolutions()
+  {
+    return solutions;
+  }
+
+  /**
+   * Finds a cell where the first two solutions differ, to show why the {@link Level} doesn't have a unique solution.
+   *
+   * @return the location of the first cell that has a different {@link Path} in each, or {@code null} if fewer than two solutions were found.
+   */
+  public Point3I getDifference()
+  {
+    if (solutions.size() < 2)
+      return null;
+    Level first = solutions.get(0);
+    Level second = solutions.get(1);
+    int size = first.size();
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+          if (first.getPath(x, y, z) != second.getPath(x, y, z))
+            return new Point3I(x, y, z);
+    return null;
+  }
+
+  /**
+   * Gets how many moves the search tried. When the count is exhaustive, this is the size of the proof that there are no more solutions.
+   *
+   * @return the number of nodes searched, over every thread.
+   */
+  public long getNodes()
+  {
+    return nodes;
+  }
+
+  /**
+   * Gets how long the count took.
+   *
+   * @return the time taken, in nanoseconds.
+   */
+  public long getNanos()
+  {
+    return nanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    String count = isExhaustive() ? "exactly " + getCount() : "at least " + getCount();
+    String certificate = isExhaustive() ? "exhaustive" : getCount() < 2 ? "stopped at the limit" : "differ at " + getDifference();
+    return count + " solution" + (getCount() == 1 ? "" : "s") + " (" + certificate + ") after " + nodes + " nodes in " + (nanos / 1000000) + "ms";
+  }
+}
@@ -0,0 +1,499 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * class Solver
+ * <p>
+ * Finds a solution to a {@link Level}, or proves that there is none, by trying every way of drawing its flows.
+ * <p>
+ * The search is depth first. A move that is forced (see {@link ForcedMoves}) is made without trying anything else.
+ * Otherwise each step picks the color whose head has the fewest open neighbours, and tries them one at a time:
+ * its target first, then the cells with the fewest empty neighbours of their own (hugging walls and other flows), then the ones nearest the target.
+ * A state is given up on as soon as it has a dead end, a flow can no longer reach its target, or a region of empty cells can no longer be filled by any flow (see {@link Connectivity}).
+ * <p>
+ * The search runs on a {@link SearchState} and a stack of moves that are made once, so it creates no objects while searching.
+ * <p>
+ * Given a {@link TranspositionTable} (see {@link Solver#setTranspositionTable(TranspositionTable)}), the search remembers the states it has searched all of without finding a solution,
+ * and doesn't search them again when a different order of moves gets back to them.
+ * See {@link ParallelSolver} to search with more than one thread, and {@link Solver#solve(Level, SolverBackend)} to pick between them and a {@link SatLevelSolver}.
+ *
+ * @author Stanley S.
+ * @version 1.8
+ */
+public class Solver
+{
+  /**
+   * How many nodes are searched between checks of {@link Solver#cancel} and calls of {@link Solver#splitter}, when there is no {@link Solver#deadline}.
+   */
+  private static final int CHECK_INTERVAL = 1024;
+  /**
+   * How many nodes are searched between checks of {@link Solver#deadline}, when there is one, so that it is kept to within a fraction of a millisecond.
+   */
+  private static final int DEADLINE_CHECK_INTERVAL = 64;
+  /**
+   * The value a {@link Solver} stores in a {@link TranspositionTable} for a state that has no solution below it.
+   */
+  public static final int NO_SOLUTION = 0;
+
+  /**
+   * The state being searched.
+   */
+  private final SearchState state;
+  /**
+   * The moves to try at each depth of the search, at {@code depth * DIRECTION_COUNT + i}.
+   */
+  private final int[] moves;
+  /**
+   * How many moves there are at each depth.
+   */
+  private final int[] moveCounts;
+  /**
+   * Which move to try next at each depth.
+   */
+  private final int[] nextMoves;
+  /**
+   * The color being moved at each depth.
+   */
+  private final int[] moveColors;
+  /**
+   * How many solutions had been found when each depth of the search was reached, to tell if any were found below it.
+   */
+  private final long[] solutionsBefore;
+  /**
+   * Whether some of the moves at each depth of the search were given away by {@link Solver#split()}, so that this {@code Solver} didn't search all of it.
+   */
+  private final boolean[] givenAway;
+  /**
+   * The scores of the moves being sorted by {@link Solver#expand(int)}. See {@link Solver#score(int, int)}.
+   */
+  private final int[] scores = new int[SearchState.DIRECTION_COUNT];
+  /**
+   * Checks if states are worth searching.
+   */
+  private final Connectivity connectivity;
+  /**
+   * How many moves have been tried.
+   */
+  private long nodes;
+  /**
+   * How many states were reached that had more than one move to try. See {@link Solver#getDecisions()}.
+   */
+  private long decisions;
+  /**
+   * How many solutions have been found.
+   */
+  private long solutions;
+  /**
+   * Where states with no solution are remembered. May be {@code null}.
+   */
+  private TranspositionTable table;
+  /**
+   * How deep the search is, from where it began.
+   */
+  private int depth;
+  /**
+   * The depth of the {@link SearchState} when the search began. The search never goes back past it.
+   */
+  private int base;
+  /**
+   * When set, the search stops soon after. May be {@code null}.
+   */
+  private AtomicBoolean cancel;
+  /**
+   * Called every {@link Solver#checkInterval} nodes, so that some of the search can be given away (see {@link Solver#split()}). May be {@code null}.
+   */
+  private Consumer<Solver> splitter;
+  /**
+   * The {@link System#nanoTime()} that the search stops at. Only used if {@link Solver#hasDeadline} is set.
+   */
+  private long deadline;
+  /**
+   * Whether the search stops at {@link Solver#deadline}.
+   */
+  private boolean hasDeadline;
+  /**
+   * How many nodes are searched between checks of {@link Solver#cancel}, {@link Solver#deadline} and calls of {@link Solver#splitter}.
+   */
+  private int checkInterval = CHECK_INTERVAL;
+  /**
+   * Called with the state whenever it gets further than it ever has, by {@link SearchState#progress()}. May be {@code null}.
+   */
+  private Consumer<SearchState> progress;
+  /**
+   * The highest {@link SearchState#progress()} that {@link Solver#progress} has been called with.
+   */
+  private long bestProgress = -1;
+  /**
+   * How many nodes will have been searched at the next check of {@link Solver#cancel} and call of {@link Solver#splitter}.
+   */
+  private long nextCheck;
+
+  /**
+   * Constructor for Solver
+   * <p>
+   * Creates a {@code Solver} for a {@link Level}. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   *
+   * @param puzzle The {@link Level} to solve.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public Solver(Level puzzle)
+  {
+    this(new SearchState(puzzle));
+  }
+
+  /**
+   * Creates a {@code Solver} that carries on searching from a {@link SearchState}. The moves already made are never taken back.
+   *
+   * @param state The state to search from. It is changed by the search.
+   */
+  Solver(SearchState state)
+  {
+    this.state = state;
+    int volume = state.volume;
+    moves = new int[(volume + 1) * SearchState.DIRECTION_COUNT];
+    moveCounts = new int[volume + 1];
+    nextMoves = new int[volume + 1];
+    moveColors = new int[volume + 1];
+    solutionsBefore = new long[volume + 1];
+    givenAway = new boolean[volume + 1];
+    connectivity = new Connectivity(volume);
+  }
+
+  /**
+   * Searches for a solution.
+   *
+   * @return the {@link SolverResult}, with the solved {@link Level} if there is one.
+   */
+  public SolverResult solve()
+  {
+    long start = System.nanoTime();
+    boolean solved = search();
+    long nanos = System.nanoTime() - start;
+    if (solved)
+      return new SolverResult(SolverStatus.SOLVED, state.toLevel(), nodes, nanos);
+    return new SolverResult(isCancelled() ? SolverStatus.STOPPED : SolverStatus.UNSOLVABLE, Collections.<Level>emptyList(), nodes, nanos);
+  }
+
+  /**
+   * Solves a {@link Level} with the chosen {@link SolverBackend}, so that they can be compared on the same {@link Level}s.
+   *
+   * @param puzzle  The {@link Level} to solve. Only its {@link PathType#START}s are used; anything already drawn is ignored.
+   * @param backend How to solve it.
+   * @return the {@link SolverResult}, with the solved {@link Level} if there is one.
+   * @throws IllegalArgumentException if a color in the {@link Level} doesn't have exactly two {@link PathType#START}s.
+   */
+  public static SolverResult solve(Level puzzle, SolverBackend backend)
+  {
+    switch (backend)
+    {
+      case PARALLEL_SEARCH:
+        return new ParallelSolver(puzzle).solve();
+      case SAT:
+        return new SatLevelSolver(puzzle).solve();
+      default:
+        return new Solver(puzzle).solve();
+    }
+  }
+
+  /**
+   * Gets how many moves have been tried so far.
+   *
+   * @return the number of nodes searched.
+   */
+  public long getNodes()
+  {
+    return nodes;
+  }
+
+  /**
+   * Gets how many times the search so far had to choose between moves, as none of them was forced. This is a cheap measure of how hard a {@link Level} is.
+   *
+   * @return the number of states reached that had more than one move to try.
+   */
+  public long getDecisions()
+  {
+    return decisions;
+  }
+
+  /**
+   * Sets where to remember the states that have no solution, and look them up before searching them.
+   * <p>
+   * The table can be shared between {@code Solver}s on any thread, even ones solving different {@link Level}s, as the hash of a state includes where its {@link PathType#START}s are (see {@link SearchState#hash}).
+   *
+   * @param table The table to use, or {@code null} for none.
+   */
+  public void setTranspositionTable(TranspositionTable table)
+  {
+    this.table = table;
+  }
+
+  /**
+   * Makes the search stop soon after a flag is set. A stopped search returns {@code false}, and leaves the state part way through.
+   *
+   * @param cancel The flag to watch, or {@code null} to never stop.
+   */
+  void setCancel(AtomicBoolean cancel)
+  {
+    this.cancel = cancel;
+  }
+
+  /**
+   * Makes the search stop soon after a time. A stopped search returns {@code false}, and leaves the state part way through, as if it was cancelled.
+   *
+   * @param deadline The {@link System#nanoTime()} to stop at.
+   */
+  void setDeadline(long deadline)
+  {
+    this.deadline = deadline;
+    hasDeadline = true;
+    checkInterval = DEADLINE_CHECK_INTERVAL;
+  }
+
+  /**
+   * Sets what is called whenever the search gets further than it ever has (see {@link SearchState#progress()}), so that the best partial solution so far can be kept.
+   * It is called on the thread searching, with the state as it is; it mustn't change the state.
+   *
+   * @param progress What to call, or {@code null} for nothing.
+   */
+  void setProgress(Consumer<SearchState> progress)
+  {
+    this.progress = progress;
+  }
+
+  /**
+   * Sets what is called every so often during the search, to give away some of it with {@link Solver#split()}.
+   *
+   * @param splitter What to call, or {@code null} for nothing.
+   */
+  void setSplitter(Consumer<Solver> splitter)
+  {
+    this.splitter = splitter;
+  }
+
+  /**
+   * Checks if the search was stopped by its cancel flag or its deadline. See {@link Solver#setCancel(AtomicBoolean)} and {@link Solver#setDeadline(long)}.
+   *
+   * @return whether the search has been cancelled.
+   */
+  boolean isCancelled()
+  {
+    return cancel != null && cancel.get() || hasDeadline && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Searches depth first from the current state, until a solution is found or every move has been tried.
+   *
+   * @return {@code true} if the state was left at a solution, or {@code false} if it was put back how it was because there is none.
+   */
+  boolean search()
+  {
+    base = state.depth;
+    depth = 0;
+    nextMoves[0] = 0;
+    moveCounts[0] = 0;
+    if (state.isSolved())
+      return true;
+    expand(0);
+    return next();
+  }
+
+  /**
+   * Carries on a search after {@link Solver#search()} or {@link Solver#next()} found a solution, to find the next one.
+   *
+   * @return {@code true} if the state was left at another solution, or {@code false} if it was put back how it was when the search began because there are no more.
+   */
+  boolean next()
+  {
+    while (true)
+    {
+      if (nodes >= nextCheck)
+      {
+        nextCheck = nodes + checkInterval;
+        if (isCancelled())
+          return false;
+        if (splitter != null)
+          splitter.accept(this);
+      }
+      int d = depth;
+      if (nextMoves[d] < moveCounts[d])
+      {
+        state.push(moveColors[d], moves[d * SearchState.DIRECTION_COUNT + nextMoves[d]++]);
+        nodes++;
+        depth = ++d;
+        solutionsBefore[d] = solutions;
+        givenAway[d] = false;
+        if (progress != null && state.progress() > bestProgress)
+        {
+          bestProgress = state.progress();
+          progress.accept(state);
+        }
+        if (state.isSolved())
+        {
+          // Nothing more to try from here, so the next call goes straight back up.
+          nextMoves[d] = 0;
+          moveCounts[d] = 0;
+          solutions++;
+          return true;
+        }
+        if (table != null && table.get(state.hash) == NO_SOLUTION)
+        {
+          nextMoves[d] = 0;
+          moveCounts[d] = 0;
+        }
+        else
+          expand(d);
+      }
+      else
+      {
+        if (d == 0)
+          return false;
+        if (table != null && solutions == solutionsBefore[d] && !givenAway[d])
+          table.put(state.hash, state.volume - state.filled, NO_SOLUTION);
+        state.pop();
+        depth = d - 1;
+      }
+    }
+  }
+
+  /**
+   * Gives away the moves that haven't been tried yet at the shallowest depth of the search that has any, so that another thread can search them.
+   * <p>
+   * This {@code Solver} won't try those moves itself, but counts them in {@link Solver#getNodes()}, as the new states start with them already made.
+   *
+   * @return a new {@link SearchState} for each move given away, with that move made. Empty if there was nothing to give away.
+   */
+  List<SearchState> split()
+  {
+    List<SearchState> children = new ArrayList<>();
+    for (int d = 0; d <= depth; d++)
+      if (nextMoves[d] < moveCounts[d])
+      {
+        SearchState parent = new SearchState(state);
+        while (parent.depth > base + d)
+          parent.pop();
+        for (int i = nextMoves[d]; i < moveCounts[d]; i++)
+        {
+          SearchState child = new SearchState(parent);
+          child.push(moveColors[d], moves[d * SearchState.DIRECTION_COUNT + i]);
+          children.add(child);
+          // The child's search starts below this move, so it is counted here.
+          nodes++;
+        }
+        moveCounts[d] = nextMoves[d];
+        // This Solver won't see whether the moves given away lead to solutions.
+        for (int i = 0; i <= d; i++)
+          givenAway[i] = true;
+        break;
+      }
+    return children;
+  }
+
+  /**
+   * Gets the {@link SearchState} being searched.
+   *
+   * @return the state.
+   */
+  SearchState getState()
+  {
+    return state;
+  }
+
+  /**
+   * Works out the moves to try at a depth of the search, from the current state. There are none if the state can't lead to a solution.
+   *
+   * @param d The depth of the search, from where it began.
+   */
+  private void expand(int d)
+  {
+    moveCounts[d] = 0;
+    nextMoves[d] = 0;
+    if (state.unconnected == 0 || !connectivity.isViable(state))
+      return;
+
+    int forced = ForcedMoves.find(state);
+    if (forced == ForcedMoves.CONTRADICTION)
+      return;
+    if (forced != ForcedMoves.NONE)
+    {
+      moveColors[d] = forced / state.volume;
+      moves[d * SearchState.DIRECTION_COUNT] = forced % state.volume;
+      moveCounts[d] = 1;
+      return;
+    }
+
+    // Move the color with the fewest choices.
+    int best = -1;
+    int bestCount = SearchState.DIRECTION_COUNT + 1;
+    for (int c = 0; c < state.colorCount && bestCount > 1; c++)
+      if (!state.connected[c])
+      {
+        int count = 0;
+        int head = state.heads[c] * SearchState.DIRECTION_COUNT;
+        for (int i = 0; i < SearchState.DIRECTION_COUNT; i++)
+        {
+          int neighbour = state.neighbours[head + i];
+          if (neighbour >= 0 && state.isOpen(c, neighbour))
+            count++;
+        }
+        if (count == 0)
+          return;
+        if (count < bestCount)
+        {
+          best = c;
+          bestCount = count;
+        }
+      }
+
+    int base = d * SearchState.DIRECTION_COUNT;
+    int count = 0;
+    int head = state.heads[best] * SearchState.DIRECTION_COUNT;
+    int target = state.targets[best];
+    for (int i = 0; i < SearchState.DIRECTION_COUNT; i++)
+    {
+      int neighbour = state.neighbours[head + i];
+      if (neighbour >= 0 && state.isOpen(best, neighbour))
+      {
+        // Insertion sort, as there are at most six.
+        int score = score(neighbour, target);
+        int j = count++;
+        while (j > 0 && scores[j - 1] > score)
+        {
+          moves[base + j] = moves[base + j - 1];
+          scores[j] = scores[j - 1];
+          j--;
+        }
+        moves[base + j] = neighbour;
+        scores[j] = score;
+      }
+    }
+    moveColors[d] = best;
+    moveCounts[d] = count;
+    if (count > 1)
+      decisions++;
+  }
+
+  /**
+   * Scores a move for the order moves are tried in: lower scores go first.
+   *
+   * @param cell   The cell being moved into.
+   * @param target The target of the color being moved.
+   * @return the score of the move.
+   */
+  private int score(int cell, int target)
+  {
+    if (cell == target)
+      return -1;
+    int free = 0;
+    int neighbours = cell * SearchState.DIRECTION_COUNT;
+    for (int i = 0; i < SearchState.DIRECTION_COUNT; i++)
+    {
+      int neighbour = state.neighbours[neighbours + i];
+      if (neighbour >= 0 && state.cells[neighbour] == SearchState.EMPTY)
+        free++;
+    }
+    return free * state.volume + state.distance(cell, target);
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * enumeration SolverBackend
+ * <p>
+ * The ways a {@link Level} can be solved, so that they can be chosen between and compared. See {@link Solver#solve(Level, SolverBackend)}.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public enum SolverBackend
+{
+  /**
+   * A depth first search on one thread, by a {@link Solver}.
+   */
+  SEARCH,
+  /**
+   * A depth first search on every thread of the common pool, by a {@link ParallelSolver}.
+   */
+  PARALLEL_SEARCH,
+  /**
+   * Encoding the {@link Level} as a SAT problem, solved by a {@link SatLevelSolver}.
+   */
+  SAT
+}
@@ -0,0 +1,140 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * class SolverResult
+ * <p>
+ * What a {@link Solver} found: the solution, if there is one, and how much work it took to find it.
+ * A {@link ParallelSolver} may be asked for more than one solution, which are all kept.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public class SolverResult
+{
+  /**
+   * How the search ended.
+   */
+  private final SolverStatus status;
+  /**
+   * The solved {@link Level}s that were found, in the order they were found.
+   */
+  private final List<Level> solutions;
+  /**
+   * How many moves were tried.
+   */
+  private final long nodes;
+  /**
+   * How long the search took, in nanoseconds.
+   */
+  private final long nanos;
+
+  /**
+   * Constructor for SolverResult
+   * <p>
+   * Creates a new {@code SolverResult} with the given outcome.
+   *
+   * @param status   How the search ended.
+   * @param solution The solved {@link Level}, or {@code null} if there isn't one.
+   * @param nodes    How many moves were tried.
+   * @param nanos    How long the search took, in nanoseconds.
+   */
+  public SolverResult(SolverStatus status, Level solution, long nodes, long nanos)
+  {
+    this(status, solution == null ? Collections.<Level>emptyList() : Collections.singletonList(solution), nodes, nanos);
+  }
+
+  /**
+   * Constructor for SolverResult
+   * <p>
+   * Creates a new {@code SolverResult} with any number of solutions.
+   *
+   * @param status    How the search ended.
+   * @param solutions The solved {@link Level}s that were found, in the order they were found.
+   * @param nodes     How many moves were tried.
+   * @param nanos     How long the search took, in nanoseconds.
+   */
+  public SolverResult(SolverStatus status, List<Level> solutions, long nodes, long nanos)
+  {
+    this.status = status;
+    this.solutions = Collections.unmodifiableList(solutions);
+    this.nodes = nodes;
+    this.nanos = nanos;
+  }
+
+  /**
+   * Gets how the search ended.
+   *
+   * @return the {@link SolverStatus} of the search.
+   */
+  public SolverStatus getStatus()
+  {
+    return status;
+  }
+
+  /**
+   * Checks if a solution was found.
+   *
+   * @return whether the status is {@link SolverStatus#SOLVED}.
+   */
+  public boolean isSolved()
+  {
+    return status == SolverStatus.SOLVED;
+  }
+
+  /**
+   * Gets the solution that was found: a full {@link Level} with every flow drawn and its directions set.
+   *
+   * @return the solved {@link Level}, or {@code null} if there isn't one. The first one found if there is more than one.
+   */
+  public Level getSolution()
+  {
+    return solutions.isEmpty() ? null : solutions.get(0);
+  }
+
+  /**
+   * Gets every solution that was found.
+   *
+   * @return an unmodifiable list of the solved {@link Level}s, in the order they were found.
+   */
+  public List<Level> getSolutions()
+  {
+    return solutions;
+  }
+
+  /**
+   * Gets how many moves the search tried. When there is no solution, this is the size of the proof that there isn't.
+   *
+   * @return the number of nodes searched.
+   */
+  public long getNodes()
+  {
+    return nodes;
+  }
+
+  /**
+   * Gets how long the search took.
+   *
+   * @return the time taken, in nanoseconds.
+   */
+  public long getNanos()
+  {
+    return nanos;
+  }
+
+  /**
+   * Gets how fast the search went, to keep track of how fast the {@link Solver} is.
+   *
+   * @return the number of nodes searched each second.
+   */
+  public double getNodesPerSecond()
+  {
+    return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    return status + " after " + nodes + " nodes in " + (nanos / 1000000) + "ms (" + Math.round(getNodesPerSecond()) + " nodes/s)";
+  }
+}
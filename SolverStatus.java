@@ -0,0 +1,23 @@
+/**
+ * enumeration SolverStatus
+ * <p>
+ * How a search by a {@link Solver} ended. See {@link SolverResult#getStatus()}.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public enum SolverStatus
+{
+  /**
+   * A solution was found.
+   */
+  SOLVED,
+  /**
+   * Every possible way of drawing the flows was tried, and none of them fill the {@link Level}, so there is no solution.
+   */
+  UNSOLVABLE,
+  /**
+   * The search was stopped, by being cancelled or running out of time, before it could tell if there is a solution.
+   */
+  STOPPED
+}
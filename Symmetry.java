@@ -0,0 +1,161 @@
+/**
+ * class Symmetry
+ * <p>
+ * One of the 48 ways of turning and mirroring a cube onto itself: the axes are put in some order, and each is either kept or flipped.
+ * <p>
+ * A {@code Symmetry} maps a cell of the turned cube back to the cell of the original cube it came from, and maps flow directions forwards, from the original cube to the turned one.
+ * Every symmetry is in {@link Symmetry#ALL}, and the first is the one that changes nothing. See {@link CanonicalForm}.
+ *
+ * @author Stanley S.
+ * @version 1.1
+ */
+public final class Symmetry
+{
+  /**
+   * Every symmetry of a cube. The first is the identity.
+   */
+  public static final Symmetry[] ALL = new Symmetry[48];
+
+  /**
+   * The orders the axes can be put in.
+   */
+  private static final int[][] AXIS_ORDERS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+  static
+  {
+    int i = 0;
+    for (int[] order : AXIS_ORDERS)
+      for (int flips = 0; flips < 8; flips++)
+        ALL[i++] = new Symmetry(order, flips);
+  }
+
+  /**
+   * Which axis of the original cube each axis of the turned cube is taken from.
+   */
+  private final int[] axes;
+  /**
+   * Which axes of the turned cube are flipped, as a bit each: X is bit 0, Y bit 1, Z bit 2.
+   */
+  private final int flips;
+  /**
+   * What each direction in the original cube becomes in the turned cube, indexed by {@link PathDirection#ordinal()}.
+   */
+  private final PathDirection[] directions;
+
+  /**
+   * Constructor for Symmetry
+   * <p>
+   * Creates a {@code Symmetry} from an order of the axes and which of them to flip.
+   *
+   * @param axes  Which axis of the original cube each axis of the turned cube is taken from.
+   * @param flips Which axes of the turned cube are flipped, as a bit each.
+   */
+  private Symmetry(int[] axes, int flips)
+  {
+    this.axes = axes;
+    this.flips = flips;
+    PathDirection[] values = PathDirection.values();
+    directions = new PathDirection[values.length];
+    for (PathDirection direction : values)
+    {
+      int[] from = {direction.getDX(), direction.getDY(), direction.getDZ()};
+      int[] to = new int[3];
+      for (int axis = 0; axis < 3; axis++)
+        to[axis] = (flips & (1 << axis)) != 0 ? -from[axes[axis]] : from[axes[axis]];
+      for (PathDirection candidate : values)
+        if (candidate.getDX() == to[0] && candidate.getDY() == to[1] && candidate.getDZ() == to[2])
+          directions[direction.ordinal()] = candidate;
+    }
+  }
+
+  /**
+   * Gets the cell of the original cube that a cell of the turned cube comes from.
+   *
+   * @param size The side length of the cube.
+   * @param x    The X location in the turned cube.
+   * @param y    The Y location in the turned cube.
+   * @param z    The Z location in the turned cube.
+   * @return the location in the original cube, packed like {@link Point3I#toPacked()}.
+   */
+  public long sourceOf(int size, int x, int y, int z)
+  {
+    int[] source = new int[3];
+    source[axes[0]] = (flips & 1) != 0 ? size - 1 - x : x;
+    source[axes[1]] = (flips & 2) != 0 ? size - 1 - y : y;
+    source[axes[2]] = (flips & 4) != 0 ? size - 1 - z : z;
+    return Point3I.pack(source[0], source[1], source[2]);
+  }
+
+  /**
+   * Gets how to work out the index of the cell of the original cube that a cell of the turned cube comes from, without making anything for each cell.
+   * <p>
+   * The cell at {@code (x, y, z)} in the turned cube comes from the cell at index {@code steps[0] + x * steps[1] + y * steps[2] + z * steps[3]} in the original cube,
+   * in the order of {@link Level#indexOf(int, int, int)}.
+   *
+   * @param size The side length of the cube.
+   * @return {@code steps}: the index that the turned cell {@code (0, 0, 0)} comes from, then how far the index moves for each step along X, Y and Z of the turned cube.
+   */
+  public int[] sourceSteps(int size)
+  {
+    int[] strides = {1, size, size * size};
+    int[] steps = new int[4];
+    for (int axis = 0; axis < 3; axis++)
+    {
+      int stride = strides[axes[axis]];
+      if ((flips & (1 << axis)) != 0)
+      {
+        steps[0] += (size - 1) * stride;
+        steps[axis + 1] = -stride;
+      }
+      else
+        steps[axis + 1] = stride;
+    }
+    return steps;
+  }
+
+  /**
+   * Gets what a direction in the original cube becomes in the turned cube.
+   *
+   * @param direction The direction in the original cube. May be {@code null}.
+   * @return the direction in the turned cube, or {@code null} if {@code direction} is {@code null}.
+   */
+  public PathDirection map(PathDirection direction)
+  {
+    return direction == null ? null : directions[direction.ordinal()];
+  }
+
+  /**
+   * Makes a turned copy of a {@link Level}.
+   *
+   * @param level The {@link Level} to turn. It is not changed.
+   * @return a new {@link Level} with every cell moved and every flow direction turned by this {@code Symmetry}.
+   */
+  public Level apply(Level level)
+  {
+    int size = level.size();
+    Cube cube = new Cube(size);
+    for (int z = 0; z < size; z++)
+      for (int y = 0; y < size; y++)
+        for (int x = 0; x < size; x++)
+        {
+          Path path = level.getPath(sourceOf(size, x, y, z));
+          if (path != null)
+            cube.setPath(Path.get(path.getType(), path.getColor(), map(path.getDirection())), x, y, z);
+        }
+    return new Level(cube);
+  }
+
+  @Override
+  public String toString()
+  {
+    char[] names = {'X', 'Y', 'Z'};
+    StringBuilder builder = new StringBuilder("(");
+    for (int axis = 0; axis < 3; axis++)
+    {
+      if (axis > 0)
+        builder.append(", ");
+      builder.append((flips & (1 << axis)) != 0 ? "-" : "+").append(names[axes[axis]]);
+    }
+    return builder.append(")").toString();
+  }
+}
@@ -0,0 +1,205 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * class TranspositionTable
+ * <p>
+ * A fixed-size table of what is known about board states, keyed by their 64-bit Zobrist hash (see {@link Zobrist}), so that a state reached again by a different order of moves doesn't have to be searched again.
+ * <p>
+ * Each entry holds an int value and a depth, which says how much work the entry saves (for a {@link Solver}, how many cells were still empty).
+ * The table is split into buckets of two entries. The first entry of a bucket is only replaced by one at least as deep, so the most useful entries stay;
+ * the second is always replaced, so that new entries still get in.
+ * <p>
+ * The table can be shared between threads without locking. Each entry is stored as two {@code long}s: the data, and the hash XORed with the data.
+ * If two threads write an entry at the same time and their halves get mixed up, the hash no longer matches and the entry is treated as missing.
+ * <p>
+ * Counters of how often the table was looked in and how often it had the answer are kept, to see if it is worth its memory.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public class TranspositionTable
+{
+  /**
+   * What {@link TranspositionTable#get(long)} returns when a state isn't in the table.
+   */
+  public static final int MISS = -1;
+  /**
+   * The bit set in the data of every entry, so that an unused entry (all zeros) never matches.
+   */
+  private static final long USED_BIT = 1L << 63;
+
+  /**
+   * The entries, two {@code long}s each: the hash XORed with the data, then the data.
+   * The data is the depth in bits 32 to 62, and the value in the low 32 bits.
+   */
+  private final AtomicLongArray entries;
+  /**
+   * The number of buckets, minus one, to pick a bucket from a hash.
+   */
+  private final int bucketMask;
+
+  /**
+   * How many times the table was looked in.
+   */
+  private final LongAdder probes = new LongAdder();
+  /**
+   * How many times the table had the state that was looked for.
+   */
+  private final LongAdder hits = new LongAdder();
+  /**
+   * How many entries were written.
+   */
+  private final LongAdder stores = new LongAdder();
+
+  /**
+   * Constructor for TranspositionTable
+   * <p>
+   * Creates an empty {@code TranspositionTable} with room for about a number of entries.
+   *
+   * @param capacity How many entries to make room for. Rounded up to a power of two, of at least 2.
+   */
+  public TranspositionTable(int capacity)
+  {
+    if (capacity < 1 || capacity > 1 << 29)
+      throw new IllegalArgumentException("A TranspositionTable can't have room for " + capacity + " entries.");
+    int slots = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+    bucketMask = slots / 2 - 1;
+    entries = new AtomicLongArray(slots * 2);
+  }
+
+  /**
+   * Looks up a state.
+   *
+   * @param hash The Zobrist hash of the state.
+   * @return the value stored for it, or {@link TranspositionTable#MISS} if it isn't in the table.
+   */
+  public int get(long hash)
+  {
+    probes.increment();
+    int base = bucketOf(hash);
+    for (int i = base; i < base + 4; i += 2)
+    {
+      long data = entries.get(i + 1);
+      if ((data & USED_BIT) != 0 && (entries.get(i) ^ data) == hash)
+      {
+        hits.increment();
+        return (int) data;
+      }
+    }
+    return MISS;
+  }
+
+  /**
+   * Stores a value for a state, if there is room for it. See the class description for which entries get replaced.
+   *
+   * @param hash  The Zobrist hash of the state.
+   * @param depth How much work the entry saves. Between {@code 0} and {@link Integer#MAX_VALUE}.
+   * @param value The value to store. Not negative.
+   */
+  public void put(long hash, int depth, int value)
+  {
+    if (depth < 0 || value < 0)
+      throw new IllegalArgumentException("The depth and value of an entry can't be negative.");
+    long data = USED_BIT | ((long) depth << 32) | value;
+    int base = bucketOf(hash);
+    long first = entries.get(base + 1);
+    boolean same = (first & USED_BIT) != 0 && (entries.get(base) ^ first) == hash;
+    int slot = same || (first & USED_BIT) == 0 || depth >= depthOf(first) ? base : base + 2;
+    entries.set(slot + 1, data);
+    entries.set(slot, hash ^ data);
+    stores.increment();
+  }
+
+  /**
+   * Empties the table and resets its counters.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < entries.length(); i++)
+      entries.set(i, 0);
+    probes.reset();
+    hits.reset();
+    stores.reset();
+  }
+
+  /**
+   * Gets how many entries the table has room for.
+   *
+   * @return the capacity of the table.
+   */
+  public int capacity()
+  {
+    return entries.length() / 2;
+  }
+
+  /**
+   * Gets how many times the table was looked in.
+   *
+   * @return the number of calls of {@link TranspositionTable#get(long)}.
+   */
+  public long getProbes()
+  {
+    return probes.sum();
+  }
+
+  /**
+   * Gets how many times the table had the state that was looked for.
+   *
+   * @return the number of hits.
+   */
+  public long getHits()
+  {
+    return hits.sum();
+  }
+
+  /**
+   * Gets how many entries were written, counting ones that replaced others.
+   *
+   * @return the number of calls of {@link TranspositionTable#put(long, int, int)}.
+   */
+  public long getStores()
+  {
+    return stores.sum();
+  }
+
+  /**
+   * Gets how often the table had the state that was looked for.
+   *
+   * @return the hits divided by the probes, or {@code 0} if there haven't been any probes.
+   */
+  public double getHitRate()
+  {
+    long probes = getProbes();
+    return probes == 0 ? 0 : (double) getHits() / probes;
+  }
+
+  /**
+   * Gets where the bucket for a hash starts in {@link TranspositionTable#entries}.
+   *
+   * @param hash The Zobrist hash.
+   * @return the index of the first {@code long} of the bucket.
+   */
+  private int bucketOf(long hash)
+  {
+    // The low bits pick the bucket; the whole hash is still checked, so no bits are wasted.
+    return ((int) hash & bucketMask) * 4;
+  }
+
+  /**
+   * Gets the depth from the data of an entry.
+   *
+   * @param data The data of the entry.
+   * @return the depth.
+   */
+  private static int depthOf(long data)
+  {
+    return (int) ((data & ~USED_BIT) >>> 32);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "TranspositionTable{" + capacity() + " entries, " + getHits() + "/" + getProbes() + " hits (" + Math.round(getHitRate() * 100) + "%), " + getStores() + " stores}";
+  }
+}
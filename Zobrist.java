@@ -0,0 +1,56 @@
+/**
+ * class Zobrist
+ * <p>
+ * Keys for Zobrist hashing of boards: the hash of a board is the XOR of a random-looking key for each of its cells, so changing a cell only takes two XORs to update the hash.
+ * <p>
+ * Instead of a table of random keys, each key is made from the cell's index and value by the SplitMix64 mixing function, so any number of indexes and values can be hashed with no memory.
+ * An empty cell's key is {@code 0}, so an empty board hashes to {@code 0}. See {@link Cube#getHash()} and {@link SearchState#hash}.
+ *
+ * @author Stanley S.
+ * @version 1.0
+ */
+public final class Zobrist
+{
+  /**
+   * The step between SplitMix64 states, the golden ratio as a 64-bit fraction.
+   */
+  private static final long GAMMA = 0x9E3779B97F4A7C15L;
+  /**
+   * Where the keys start from, so that they don't line up with other uses of SplitMix64.
+   */
+  private static final long SEED = 0x46334453L;
+
+  /**
+   * There is no need for an instance of this class.
+   */
+  private Zobrist()
+  {
+  }
+
+  /**
+   * Gets the key of a cell having a value.
+   *
+   * @param index The index of the cell.
+   * @param value The value of the cell. {@code 0} is empty.
+   * @return the key, or {@code 0} if {@code value} is {@code 0}.
+   */
+  public static long key(int index, int value)
+  {
+    if (value == 0)
+      return 0;
+    return mix(SEED + GAMMA * ((((long) index) << 32) ^ (value & 0xFFFFFFFFL)));
+  }
+
+  /**
+   * Scrambles the bits of a {@code long}, as the output step of SplitMix64 does.
+   *
+   * @param z The value to scramble.
+   * @return the scrambled value.
+   */
+  public static long mix(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}